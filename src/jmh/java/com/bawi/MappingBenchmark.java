@@ -0,0 +1,100 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.benchmark.XmlDocumentGenerator;
+import com.bawi.parser.CustomFieldParser;
+import com.ximpleware.ParseException;
+import com.ximpleware.VTDGen;
+import com.ximpleware.VTDNav;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping and navigation cost of each {@link Entry} kind on an already tokenized document, so that tokenizing
+ * does not hide regressions in the evaluation of the compiled plan.
+ * <p>
+ * With {@code navigation=autopilot} every xpath is prefixed with {@code ./}, which turns off the single pass
+ * {@link PathWalker} and evaluates each entry with its own {@code AutoPilot}.
+ * <p>
+ * Unlike the other benchmarks this one lives in {@code com.bawi} rather than {@code com.bawi.benchmark}: it drives
+ * {@link ExtractionPlan}, {@link MapResultWriter} and {@link RecordResultWriter} directly, which are package-private
+ * and are not meant to become public API for the sake of a benchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({"1000"})
+    public int records;
+
+    @Param({"2"})
+    public int depth;
+
+    @Param({"attribute", "text", "nested", "custom"})
+    public String entries;
+
+    @Param({"walker", "autopilot"})
+    public String navigation;
+
+    private VTDNav nav;
+    private ExtractionPlan plan;
+    private ExtractionPlan.Context context;
+    private MapResultWriter mapWriter;
+    private RecordResultWriter recordWriter;
+
+    @Setup
+    public void setUp() throws ParseException {
+        XmlDocumentGenerator generator = new XmlDocumentGenerator(records, depth, 3);
+        VTDGen vtdGen = new VTDGen();
+        vtdGen.setDoc(generator.generate());
+        vtdGen.parse(false);
+        nav = vtdGen.getNav();
+        List<Entry> mapping;
+        switch (entries) {
+            case "attribute":
+                mapping = XmlDocumentGenerator.attributeMapping();
+                break;
+            case "text":
+                mapping = XmlDocumentGenerator.textMapping();
+                break;
+            case "nested":
+                mapping = generator.nestedMapping();
+                break;
+            default:
+                mapping = XmlDocumentGenerator.customParserMapping();
+        }
+        plan = ExtractionPlan.compile("autopilot".equals(navigation) ? relative(mapping) : mapping);
+        context = plan.newContext();
+        mapWriter = new MapResultWriter();
+        recordWriter = new RecordResultWriter();
+    }
+
+    @Benchmark
+    public Map<String, Object> mapToMap() throws Exception {
+        nav.toElement(VTDNav.ROOT);
+        return plan.evaluate(nav, context, mapWriter);
+    }
+
+    @Benchmark
+    public Record mapToRecord() throws Exception {
+        nav.toElement(VTDNav.ROOT);
+        return plan.evaluate(nav, context, recordWriter);
+    }
+
+    private static List<Entry> relative(List<Entry> mapping) {
+        List<Entry> entries = new ArrayList<>();
+        for (Entry entry : mapping) {
+            String xpath = entry.clazz != null && CustomFieldParser.class.isAssignableFrom(entry.clazz) ? entry.xpath : "./" + entry.xpath;
+            entries.add(new Entry(entry.field, xpath, entry.clazz, relative(entry.children)));
+        }
+        return entries;
+    }
+}
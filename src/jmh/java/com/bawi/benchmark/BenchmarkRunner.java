@@ -0,0 +1,24 @@
+package com.bawi.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so every result reports throughput, the p99 of the sampled latency
+ * ({@code SampleTime} mode) and the allocation rate ({@code gc.alloc.rate.norm}). Accepts the usual JMH command
+ * line, e.g. {@code MappingBenchmark -p entries=nested -f 1}.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,75 @@
+package com.bawi.benchmark;
+
+import com.bawi.AbstractVtdXmlParser.Options;
+import com.bawi.VtdXmlParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End to end parse benchmarks: tokenizing with {@code VTDGen} or {@code VTDGenHuge} plus mapping with the full
+ * mapping of {@link XmlDocumentGenerator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"100", "10000"})
+    public int records;
+
+    @Param({"2"})
+    public int depth;
+
+    @Param({"3"})
+    public int itemsPerLevel;
+
+    private byte[] xml;
+    private Path xmlFile;
+    private VtdXmlParser parser;
+    private VtdXmlParser hugeParser;
+
+    @Setup
+    public void setUp() throws IOException {
+        XmlDocumentGenerator generator = new XmlDocumentGenerator(records, depth, itemsPerLevel);
+        xml = generator.generate();
+        xmlFile = generator.generate(Files.createTempFile("benchmark", ".xml"));
+        parser = new VtdXmlParser(generator.fullMapping(), Options.defaults().withMaxIdleStates(1));
+        hugeParser = new VtdXmlParser(generator.fullMapping(), Options.defaults().withMaxIdleStates(1).withHugeFileThreshold(0));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(xmlFile);
+    }
+
+    @Benchmark
+    public Map<String, Object> parseXml() {
+        return parser.parseXml(xml);
+    }
+
+    @Benchmark
+    public Map<String, Object> parseFile() {
+        return parser.parseFile(xmlFile);
+    }
+
+    @Benchmark
+    public Map<String, Object> parseFileWithVtdGenHuge() {
+        return hugeParser.parseFile(xmlFile);
+    }
+
+    @Benchmark
+    public long streamFile() {
+        try (Stream<Map<String, Object>> records = parser.streamFile(xmlFile.toString(), "record")) {
+            return records.count();
+        }
+    }
+}
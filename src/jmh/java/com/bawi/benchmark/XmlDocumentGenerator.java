@@ -0,0 +1,165 @@
+package com.bawi.benchmark;
+
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.parser.CustomFieldParser;
+import com.bawi.parser.StringLengthParser;
+import com.bawi.parser.SumValuesParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic, deterministic XML documents of the shape
+ * <pre>{@code
+ * <records generated="...">
+ *     <record id="0" type="t0" amount="12.5">
+ *         <name>record 0</name><amount>12.5</amount><created>2024-01-01T00:00:00Z</created>
+ *         <item value="3"/>...
+ *         <level1 id="0"><name>level 1</name><item value="3"/>...<level2 ...>...</level2></level1>
+ *     </record>
+ *     ...
+ * </records>
+ * }</pre>
+ * together with mappings that exercise one {@link Entry} kind each.
+ */
+public final class XmlDocumentGenerator {
+
+    private final int records;
+    private final int depth;
+    private final int itemsPerLevel;
+
+    /**
+     * @param records       number of {@code record} elements below the root
+     * @param depth         number of nested {@code levelN} elements inside each record
+     * @param itemsPerLevel number of repeated {@code item} elements per record and level
+     */
+    public XmlDocumentGenerator(int records, int depth, int itemsPerLevel) {
+        this.records = records;
+        this.depth = depth;
+        this.itemsPerLevel = itemsPerLevel;
+    }
+
+    public byte[] generate() {
+        Random random = new Random(records * 31L + depth);
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<records generated=\"")
+                .append(Instant.ofEpochSecond(1_700_000_000L)).append("\">\n");
+        for (int i = 0; i < records; i++) {
+            double amount = random.nextInt(100_000) / 100.0;
+            xml.append("  <record id=\"").append(i).append("\" type=\"t").append(i % 5).append("\" amount=\"").append(amount).append("\">\n")
+                    .append("    <name>record ").append(i).append("</name>\n")
+                    .append("    <amount>").append(amount).append("</amount>\n")
+                    .append("    <created>").append(Instant.ofEpochSecond(1_700_000_000L + i * 60L)).append("</created>\n");
+            appendItems(xml, random, "    ");
+            appendLevel(xml, random, 1, "    ");
+            xml.append("  </record>\n");
+        }
+        return xml.append("</records>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public Path generate(Path file) throws IOException {
+        return Files.write(file, generate());
+    }
+
+    private void appendLevel(StringBuilder xml, Random random, int level, String indent) {
+        if (level > depth) {
+            return;
+        }
+        xml.append(indent).append("<level").append(level).append(" id=\"").append(random.nextInt(1000)).append("\">\n")
+                .append(indent).append("  <name>level ").append(level).append("</name>\n");
+        appendItems(xml, random, indent + "  ");
+        appendLevel(xml, random, level + 1, indent + "  ");
+        xml.append(indent).append("</level").append(level).append(">\n");
+    }
+
+    private void appendItems(StringBuilder xml, Random random, String indent) {
+        for (int i = 0; i < itemsPerLevel; i++) {
+            xml.append(indent).append("<item value=\"").append(random.nextInt(100)).append("\"/>\n");
+        }
+    }
+
+    /**
+     * Attribute values of every record.
+     */
+    public static List<Entry> attributeMapping() {
+        return List.of(new Entry("records", "record", attributeEntries()));
+    }
+
+    /**
+     * Text values of every record.
+     */
+    public static List<Entry> textMapping() {
+        return List.of(new Entry("records", "record", textEntries()));
+    }
+
+    /**
+     * Records nested {@code depth} levels deep with repeated values on every level.
+     */
+    public List<Entry> nestedMapping() {
+        return List.of(new Entry("records", "record", nestedEntries()));
+    }
+
+    /**
+     * {@link CustomFieldParser}s evaluated once per record.
+     */
+    public static List<Entry> customParserMapping() {
+        return List.of(new Entry("records", "record", customParserEntries()));
+    }
+
+    /**
+     * Union of all mappings, the typical production shape.
+     */
+    public List<Entry> fullMapping() {
+        List<Entry> entries = new ArrayList<>();
+        entries.addAll(attributeEntries());
+        entries.addAll(textEntries());
+        entries.addAll(nestedEntries().subList(1, 3));
+        entries.addAll(customParserEntries());
+        return List.of(
+                new Entry("generated", "@generated", Instant.class),
+                new Entry("records", "record", entries));
+    }
+
+    private static List<Entry> attributeEntries() {
+        return List.of(
+                new Entry("id", "@id", Integer.class),
+                new Entry("type", "@type"),
+                new Entry("amount_attr", "@amount", Double.class));
+    }
+
+    private static List<Entry> textEntries() {
+        return List.of(
+                new Entry("name", "name"),
+                new Entry("amount", "amount", Double.class),
+                new Entry("created", "created", Instant.class));
+    }
+
+    private List<Entry> nestedEntries() {
+        return List.of(
+                new Entry("id", "@id", Integer.class),
+                new Entry("items", "item/@value", Integer.class),
+                new Entry("level1", "level1", levelEntries(1)));
+    }
+
+    private List<Entry> levelEntries(int level) {
+        List<Entry> entries = new ArrayList<>(List.of(
+                new Entry("id", "@id", Integer.class),
+                new Entry("name", "name"),
+                new Entry("items", "item/@value", Integer.class)));
+        if (level < depth) {
+            entries.add(new Entry("level" + (level + 1), "level" + (level + 1), levelEntries(level + 1)));
+        }
+        return entries;
+    }
+
+    private static List<Entry> customParserEntries() {
+        return List.of(
+                new Entry("item_sum", "item/@value", SumValuesParser.class),
+                new Entry("name_length", "name", StringLengthParser.class));
+    }
+}
@@ -0,0 +1,479 @@
+package com.bawi;
+
+import com.bawi.ParserStatePool.HugeState;
+import com.bawi.ParserStatePool.ParserState;
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.metrics.ParserMetrics;
+import com.ximpleware.*;
+import com.ximpleware.extended.VTDExceptionHuge;
+import com.ximpleware.extended.VTDGenHuge;
+import com.ximpleware.extended.VTDNavHuge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Maps XML documents to results of type {@code R} according to a list of {@link Entry} definitions. The output
+ * type is chosen by the subclass: {@link VtdXmlParser} for maps, {@link VtdXmlRecordParser} for {@link Record}s.
+ * <p>
+ * Instances are thread-safe: one parser can be shared by any number of platform or virtual threads. Each parse
+ * borrows a pooled {@link VTDGen} (reusing its token buffers via {@code setDoc_BR}) together with precompiled
+ * {@link AutoPilot}s and returns them when the result has been materialized.
+ * <p>
+ * Tokenizing and mapping times, document sizes and per-entry statistics are reported to the {@link ParserMetrics}
+ * of the {@link Options}, {@link ParserMetrics#NOOP} by default.
+ */
+public abstract class AbstractVtdXmlParser<R> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractVtdXmlParser.class);
+
+    private static final Pattern ENCODING_DECLARATION = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+    /**
+     * Largest document {@link VTDGen} can handle (2 GB minus array header), bigger files go through {@link VTDGenHuge}.
+     */
+    public static final long MAX_VTD_GEN_DOCUMENT_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * Tuning shared by all parser types, e.g.
+     * {@code Options.defaults().withHugeFileThreshold(1L << 30).withSkipUnmappedSubtrees(true)}. Instances are
+     * immutable, every {@code with} method returns a modified copy.
+     */
+    public static final class Options {
+        private static final Options DEFAULTS = new Options(2 * Runtime.getRuntime().availableProcessors(),
+                MAX_VTD_GEN_DOCUMENT_SIZE, null, ParserMetrics.NOOP, false);
+
+        final int maxIdleStates;
+        final long hugeFileThreshold;
+        final ForkJoinPool recordPool;
+        final ParserMetrics metrics;
+        final boolean skipUnmappedSubtrees;
+
+        private Options(int maxIdleStates, long hugeFileThreshold, ForkJoinPool recordPool, ParserMetrics metrics,
+                        boolean skipUnmappedSubtrees) {
+            this.maxIdleStates = maxIdleStates;
+            this.hugeFileThreshold = hugeFileThreshold;
+            this.recordPool = recordPool;
+            this.metrics = metrics;
+            this.skipUnmappedSubtrees = skipUnmappedSubtrees;
+        }
+
+        /**
+         * Twice as many pooled states as processors, huge parsing only above {@link #MAX_VTD_GEN_DOCUMENT_SIZE},
+         * serial record evaluation, no metrics and no skipped subtrees.
+         */
+        public static Options defaults() {
+            return DEFAULTS;
+        }
+
+        /**
+         * @param maxIdleStates upper bound of pooled {@link VTDGen}/{@link AutoPilot} states kept between parses
+         */
+        public Options withMaxIdleStates(int maxIdleStates) {
+            if (maxIdleStates < 0) {
+                throw new IllegalArgumentException("Max idle states must not be negative but was " + maxIdleStates);
+            }
+            return new Options(maxIdleStates, hugeFileThreshold, recordPool, metrics, skipUnmappedSubtrees);
+        }
+
+        /**
+         * @param hugeFileThreshold files above this size are memory-mapped and parsed with {@link VTDGenHuge}
+         */
+        public Options withHugeFileThreshold(long hugeFileThreshold) {
+            if (hugeFileThreshold > MAX_VTD_GEN_DOCUMENT_SIZE) {
+                throw new IllegalArgumentException("Huge file threshold must not exceed " + MAX_VTD_GEN_DOCUMENT_SIZE);
+            }
+            return new Options(maxIdleStates, hugeFileThreshold, recordPool, metrics, skipUnmappedSubtrees);
+        }
+
+        /**
+         * @param recordPool pool evaluating the repeated records of top level record entries in parallel, results keep
+         *                   document order; null to evaluate serially
+         */
+        public Options withRecordPool(ForkJoinPool recordPool) {
+            return new Options(maxIdleStates, hugeFileThreshold, recordPool, metrics, skipUnmappedSubtrees);
+        }
+
+        /**
+         * @param metrics receives parse timings and per-entry statistics, e.g. a
+         *                {@link com.bawi.metrics.ParserStatistics}
+         */
+        public Options withMetrics(ParserMetrics metrics) {
+            return new Options(maxIdleStates, hugeFileThreshold, recordPool, Objects.requireNonNull(metrics), skipUnmappedSubtrees);
+        }
+
+        /**
+         * @param skipUnmappedSubtrees skip the children of the root element that no xpath reaches before tokenizing,
+         *                             requires relative xpaths starting with a child name or root attribute
+         */
+        public Options withSkipUnmappedSubtrees(boolean skipUnmappedSubtrees) {
+            return new Options(maxIdleStates, hugeFileThreshold, recordPool, metrics, skipUnmappedSubtrees);
+        }
+    }
+
+    private final ExtractionPlan plan;
+    private final ParserStatePool<R> statePool;
+    private final long hugeFileThreshold;
+    private final ParallelRecords<R> parallelRecords;
+    private final ParserMetrics metrics;
+    private final boolean timed;
+    private final SubtreeFilter subtreeFilter;
+
+    AbstractVtdXmlParser(List<Entry> mappingEntries, Options options, Supplier<? extends ResultWriter<R>> writerFactory) {
+        this.plan = ExtractionPlan.compile(mappingEntries, options.metrics);
+        this.metrics = options.metrics;
+        this.timed = metrics.enabled();
+        this.subtreeFilter = options.skipUnmappedSubtrees ? subtreeFilter(plan) : null;
+        this.statePool = new ParserStatePool<>(plan, writerFactory, options.maxIdleStates);
+        this.hugeFileThreshold = options.hugeFileThreshold;
+        this.parallelRecords = options.recordPool == null ? null
+                : new ParallelRecords<>(plan, options.recordPool, statePool);
+    }
+
+    private static SubtreeFilter subtreeFilter(ExtractionPlan plan) {
+        Set<String> keptChildren = plan.keptRootChildren();
+        if (keptChildren == null) {
+            throw new IllegalArgumentException("Unmapped subtrees can only be skipped when every xpath is relative and "
+                    + "starts with a named child or root attribute");
+        }
+        return new SubtreeFilter(keptChildren);
+    }
+
+    ExtractionPlan plan() {
+        return plan;
+    }
+
+    public R parseFile(String xmlFilePath) {
+        return parseFile(Path.of(xmlFilePath));
+    }
+
+    /**
+     * Parses the file through a memory mapping, see {@link #parseFile(FileChannel)}.
+     */
+    public R parseFile(Path xmlFilePath) {
+        try (FileChannel channel = FileChannel.open(xmlFilePath, StandardOpenOption.READ)) {
+            return parseFile(channel);
+        } catch (IOException e) {
+            LOGGER.error("Failed to parse file " + xmlFilePath, e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses the whole content of the channel through a memory mapping.
+     * <p>
+     * Up to the huge file threshold the mapping is copied once into a pooled array for {@link VTDGen} (which only
+     * accepts {@code byte[]}). Above it the mapped file is tokenized in place by {@link VTDGenHuge}, without any heap
+     * copy of the document. The same mapping applies in both modes.
+     */
+    public R parseFile(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > hugeFileThreshold) {
+            return parseHuge(SegmentedXmlBuffer.map(channel));
+        }
+        return parseXml(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+    }
+
+    /**
+     * Maps the file using the index kept by the cache, tokenizing it only when the cache holds no current index.
+     * Files above the huge file threshold cannot be indexed and are parsed as by {@link #parseFile(Path)}.
+     */
+    public R parseFile(Path xmlFilePath, VtdIndexCache indexCache) {
+        try {
+            if (Files.size(xmlFilePath) > hugeFileThreshold) {
+                return parseFile(xmlFilePath);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to parse file " + xmlFilePath, e);
+            throw new UncheckedIOException(e);
+        }
+        VTDNav nav = indexCache.nav(xmlFilePath);
+        ParserState<R> state = statePool.acquire();
+        try {
+            return plan.evaluate(nav, state.context, state.writer, parallelRecords);
+        } finally {
+            statePool.release(state);
+        }
+    }
+
+    private R parseHuge(SegmentedXmlBuffer buffer) {
+        VTDGenHuge vtdGen = new VTDGenHuge();
+        vtdGen.setDoc(buffer);
+        try {
+            long start = timed ? System.nanoTime() : 0;
+            vtdGen.parse(false);
+            if (timed) {
+                metrics.documentParsed(buffer.length(), System.nanoTime() - start);
+            }
+            VTDNavHuge nav = vtdGen.getNav();
+            HugeState<R> state = statePool.acquireHuge();
+            try {
+                return plan.evaluate(nav, state.context, state.writer, parallelRecords);
+            } finally {
+                statePool.releaseHuge(state);
+            }
+        } catch (VTDExceptionHuge e) {
+            LOGGER.error("Failed to parse huge document", e);
+            if (timed) {
+                metrics.documentFailed(e);
+            }
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Parses an XML string. The string is encoded with the charset named in its XML declaration, UTF-8 by default,
+     * so that {@link VTDGen} decodes it back to the same characters.
+     */
+    public R parseXml(String xmlFilePath) {
+        byte[] xml = xmlFilePath.getBytes(declaredCharset(xmlFilePath));
+        return parseXml(xml, 0, xml.length);
+    }
+
+    public R parseXml(byte[] xml) {
+        return parseXml(xml, 0, xml.length);
+    }
+
+    /**
+     * Parses {@code length} bytes of {@code xml} starting at {@code offset} in place, without copying or decoding them.
+     * The encoding is detected by {@link VTDGen} from the BOM or XML declaration. The caller may reuse the array once
+     * this method returns.
+     */
+    public R parseXml(byte[] xml, int offset, int length) {
+        ParserState<R> state = statePool.acquire();
+        try {
+            return parse(state, xml, offset, length);
+        } finally {
+            statePool.release(state);
+        }
+    }
+
+    /**
+     * Parses the remaining bytes of the buffer without changing its position. Heap buffers are parsed in place,
+     * direct and read-only buffers are copied once into a pooled array.
+     */
+    public R parseXml(ByteBuffer xml) {
+        if (xml.hasArray()) {
+            return parseXml(xml.array(), xml.arrayOffset() + xml.position(), xml.remaining());
+        }
+        ParserState<R> state = statePool.acquire();
+        try {
+            int length = xml.remaining();
+            byte[] buffer = state.buffer(length);
+            xml.get(xml.position(), buffer, 0, length);
+            return parse(state, buffer, 0, length);
+        } finally {
+            statePool.release(state);
+        }
+    }
+
+    /**
+     * Tokenizes the remaining bytes of a direct buffer in place with {@link VTDGenHuge}, without copying them onto
+     * the heap as {@link #parseXml(ByteBuffer)} does. The position of the buffer is not changed.
+     */
+    public R parseOffHeap(ByteBuffer xml) {
+        if (!xml.isDirect()) {
+            throw new IllegalArgumentException("Off-heap parsing requires a direct buffer, use parseXml for heap buffers");
+        }
+        return parseHuge(SegmentedXmlBuffer.wrap(xml));
+    }
+
+    /**
+     * Reads the stream into direct blocks of the arena and tokenizes them in place with {@link VTDGenHuge}, so
+     * heap use does not grow with the size of the document bytes. The blocks are returned to the arena for the next
+     * document once the result has been materialized. The input stream is not closed.
+     */
+    public R parseOffHeap(InputStream xml, OffHeapBufferArena arena) {
+        SegmentedXmlBuffer buffer;
+        try {
+            buffer = arena.read(xml);
+        } catch (IOException e) {
+            LOGGER.error("Failed to read document into off-heap arena", e);
+            throw new UncheckedIOException(e);
+        }
+        try {
+            return parseHuge(buffer);
+        } finally {
+            arena.release(buffer);
+        }
+    }
+
+    /**
+     * Streams one result per {@code recordElement} found in the file, applying the mapping relative to each record.
+     * <p>
+     * The file is read in bounded chunks and every record is tokenized on its own, so memory use stays constant
+     * regardless of the file size. The stream must be closed to release the file.
+     */
+    public Stream<R> streamFile(String xmlFilePath, String recordElement) {
+        try {
+            return stream(Files.newInputStream(Path.of(xmlFilePath)), recordElement);
+        } catch (IOException e) {
+            LOGGER.error("Failed to open file " + xmlFilePath, e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Streams one result per {@code recordElement} read from the input stream, see {@link #streamFile(String, String)}.
+     * Closing the returned stream closes the input stream.
+     */
+    public Stream<R> stream(InputStream inputStream, String recordElement) {
+        XmlRecordSplitter splitter = new XmlRecordSplitter(inputStream, recordElement);
+        Iterator<R> records = new Iterator<>() {
+            private Boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (hasNext == null) {
+                    try {
+                        hasNext = splitter.next();
+                    } catch (IOException e) {
+                        LOGGER.error("Failed to read record " + recordElement, e);
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return hasNext;
+            }
+
+            @Override
+            public R next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                hasNext = null;
+                return parseXml(splitter.buffer(), splitter.offset(), splitter.length());
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(records, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        inputStream.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Returns a pipeline parsing batches of documents with tokenizing and mapping as separate stages on the given
+     * executors. Keep {@link Options#withMaxIdleStates(int)} at least at {@code maxInFlight} so the pipeline's parser states are
+     * reused rather than recreated.
+     *
+     * @param tokenizer   runs {@code VTDGen.parse}
+     * @param mapper      evaluates the mapping of tokenized documents
+     * @param maxInFlight number of documents read ahead of the consumer
+     */
+    public ParsePipeline<R> pipeline(Executor tokenizer, Executor mapper, int maxInFlight) {
+        return new ParsePipeline<>(this, tokenizer, mapper, maxInFlight);
+    }
+
+    /**
+     * Pipeline running both stages on the executor, see {@link #pipeline(Executor, Executor, int)}.
+     */
+    public ParsePipeline<R> pipeline(Executor executor, int maxInFlight) {
+        return pipeline(executor, executor, maxInFlight);
+    }
+
+    /**
+     * Pipeline running both stages on virtual threads, see {@link #pipeline(Executor, Executor, int)}.
+     */
+    public ParsePipeline<R> pipeline(int maxInFlight) {
+        Executor virtualThreads = task -> Thread.ofVirtual().start(task);
+        return pipeline(virtualThreads, maxInFlight);
+    }
+
+    /**
+     * First pipeline stage: tokenizes the document into a borrowed state, which is handed back on failure.
+     */
+    ParserState<R> tokenize(byte[] xml, int offset, int length) {
+        ParserState<R> state = statePool.acquire();
+        try {
+            tokenize(state, xml, offset, length);
+            return state;
+        } catch (RuntimeException e) {
+            statePool.release(state);
+            throw e;
+        }
+    }
+
+    /**
+     * Second pipeline stage: maps a tokenized document and hands its state back.
+     */
+    R map(ParserState<R> state) {
+        try {
+            return parseVTDGen(state);
+        } finally {
+            release(state);
+        }
+    }
+
+    void release(ParserState<R> state) {
+        statePool.release(state);
+    }
+
+    private R parse(ParserState<R> state, byte[] xml, int offset, int length) {
+        tokenize(state, xml, offset, length);
+        return parseVTDGen(state);
+    }
+
+    private void tokenize(ParserState<R> state, byte[] xml, int offset, int length) {
+        try {
+            long start = timed ? System.nanoTime() : 0;
+            if (subtreeFilter != null) {
+                byte[] filtered = state.filterBuffer(length);
+                int filteredLength = subtreeFilter.filter(xml, offset, length, filtered);
+                if (filteredLength >= 0) {
+                    state.setDoc(filtered, 0, filteredLength);
+                } else {
+                    state.setDoc(xml, offset, length);
+                }
+            } else {
+                state.setDoc(xml, offset, length);
+            }
+            state.vtdGen.parse(false);
+            if (timed) {
+                metrics.documentParsed(length, System.nanoTime() - start);
+            }
+        } catch (ParseException e) {
+            LOGGER.error("Failed to parse", e);
+            if (timed) {
+                metrics.documentFailed(e);
+            }
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Charset declaredCharset(String xml) {
+        if (xml.startsWith("<?xml")) {
+            int declarationEnd = xml.indexOf("?>");
+            Matcher matcher = ENCODING_DECLARATION.matcher(declarationEnd < 0 ? xml : xml.substring(0, declarationEnd));
+            if (matcher.find()) {
+                return Charset.forName(matcher.group(1));
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private R parseVTDGen(ParserState<R> state) {
+        VTDNav nav = state.vtdGen.getNav();
+        return plan.evaluate(nav, state.context, state.writer, parallelRecords);
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.bawi;
+
+import com.bawi.parser.FieldEvaluator;
+import com.ximpleware.AutoPilot;
+import com.ximpleware.NavException;
+import com.ximpleware.VTDException;
+import com.ximpleware.VTDNav;
+
+/**
+ * {@link FieldEvaluator} over the precompiled {@link AutoPilot} of a custom entry, owned by one
+ * {@link ExtractionPlan.Context}.
+ * <p>
+ * When the entry is walkable, its value tokens have already been collected by the {@link PathWalker} walk shared
+ * with the other entries of the record and are handed out by {@link #nextValue()} instead of evaluating the xpath
+ * again. {@link #evalString()} of attributes reads the first collected value as well, other string and number
+ * values are still evaluated by the {@link AutoPilot}.
+ */
+final class AutoPilotFieldEvaluator implements FieldEvaluator {
+
+    private final ExtractionPlan.Node node;
+    private final AutoPilot ap;
+    private VTDNav nav;
+    private boolean walked;
+    private int[] matches;
+    private int matchCount;
+    private int nextMatch;
+
+    AutoPilotFieldEvaluator(ExtractionPlan.Node node, AutoPilot ap) {
+        this.node = node;
+        this.ap = ap;
+    }
+
+    void bind(VTDNav nav) {
+        this.nav = nav;
+        ap.bind(nav);
+    }
+
+    /**
+     * Serves the value tokens collected by the walk until the next {@link #reset()}.
+     */
+    void bindMatches(int[] matches, int matchCount) {
+        this.walked = true;
+        this.matches = matches;
+        this.matchCount = matchCount;
+        this.nextMatch = 0;
+    }
+
+    /**
+     * Drops the navigator of the last document, the pilot is rebound by the owning context.
+     */
+    void unbind() {
+        nav = null;
+        walked = false;
+        matches = null;
+    }
+
+    void reset() {
+        ap.resetXPath();
+        walked = false;
+        matches = null;
+    }
+
+    @Override
+    public String field() {
+        return node.entry.field;
+    }
+
+    @Override
+    public String xpath() {
+        return node.entry.xpath;
+    }
+
+    @Override
+    public int nextValue() throws VTDException {
+        if (walked) {
+            return nextMatch < matchCount ? matches[nextMatch++] : -1;
+        }
+        int i;
+        while ((i = ap.evalXPath()) != -1) {
+            if (node.attribute) {
+                return i + 1; // attribute value token follows its name
+            }
+            int textTokenIdx = nav.getText();
+            if (textTokenIdx != -1) {
+                return textTokenIdx;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString(int tokenIdx) throws VTDException {
+        return nav.toString(tokenIdx);
+    }
+
+    @Override
+    public int parseInt(int tokenIdx) throws VTDException {
+        return nav.parseInt(tokenIdx);
+    }
+
+    @Override
+    public long parseLong(int tokenIdx) throws VTDException {
+        return nav.parseLong(tokenIdx);
+    }
+
+    @Override
+    public double parseDouble(int tokenIdx) throws VTDException {
+        return nav.parseDouble(tokenIdx);
+    }
+
+    @Override
+    public String evalString() {
+        if (walked && node.attribute) {
+            try {
+                return matchCount == 0 ? "" : nav.toString(matches[0]);
+            } catch (NavException e) {
+                // fall back to the xpath, which reports nothing either
+            }
+        }
+        return ap.evalXPathToString();
+    }
+
+    @Override
+    public double evalNumber() {
+        return ap.evalXPathToNumber();
+    }
+}
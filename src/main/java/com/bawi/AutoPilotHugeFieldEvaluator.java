@@ -0,0 +1,122 @@
+package com.bawi;
+
+import com.bawi.parser.FieldEvaluator;
+import com.ximpleware.NavException;
+import com.ximpleware.VTDException;
+import com.ximpleware.extended.AutoPilotHuge;
+import com.ximpleware.extended.VTDExceptionHuge;
+import com.ximpleware.extended.VTDNavHuge;
+
+/**
+ * {@link FieldEvaluator} over the precompiled {@link AutoPilotHuge} of a custom entry, owned by one
+ * {@link ExtractionPlan.HugeContext}. Exceptions of the huge API are rethrown as {@link NavException}s carrying the
+ * original cause.
+ */
+final class AutoPilotHugeFieldEvaluator implements FieldEvaluator {
+
+    private final ExtractionPlan.Node node;
+    private final AutoPilotHuge ap;
+    private VTDNavHuge nav;
+
+    AutoPilotHugeFieldEvaluator(ExtractionPlan.Node node, AutoPilotHuge ap) {
+        this.node = node;
+        this.ap = ap;
+    }
+
+    void bind(VTDNavHuge nav) {
+        this.nav = nav;
+        ap.bind(nav);
+    }
+
+    /**
+     * Drops the navigator of the last document, the pilot is rebound by the owning context.
+     */
+    void unbind() {
+        nav = null;
+    }
+
+    void reset() {
+        ap.resetXPath();
+    }
+
+    @Override
+    public String field() {
+        return node.entry.field;
+    }
+
+    @Override
+    public String xpath() {
+        return node.entry.xpath;
+    }
+
+    @Override
+    public int nextValue() throws VTDException {
+        try {
+            int i;
+            while ((i = ap.evalXPath()) != -1) {
+                if (node.attribute) {
+                    return i + 1; // attribute value token follows its name
+                }
+                int textTokenIdx = nav.getText();
+                if (textTokenIdx != -1) {
+                    return textTokenIdx;
+                }
+            }
+            return -1;
+        } catch (VTDExceptionHuge e) {
+            throw navException(e);
+        }
+    }
+
+    @Override
+    public String toString(int tokenIdx) throws VTDException {
+        try {
+            return nav.toString(tokenIdx);
+        } catch (VTDExceptionHuge e) {
+            throw navException(e);
+        }
+    }
+
+    @Override
+    public int parseInt(int tokenIdx) throws VTDException {
+        try {
+            return nav.parseInt(tokenIdx);
+        } catch (VTDExceptionHuge e) {
+            throw navException(e);
+        }
+    }
+
+    @Override
+    public long parseLong(int tokenIdx) throws VTDException {
+        try {
+            return nav.parseLong(tokenIdx);
+        } catch (VTDExceptionHuge e) {
+            throw navException(e);
+        }
+    }
+
+    @Override
+    public double parseDouble(int tokenIdx) throws VTDException {
+        try {
+            return nav.parseDouble(tokenIdx);
+        } catch (VTDExceptionHuge e) {
+            throw navException(e);
+        }
+    }
+
+    @Override
+    public String evalString() {
+        return ap.evalXPathToString();
+    }
+
+    @Override
+    public double evalNumber() {
+        return ap.evalXPathToNumber();
+    }
+
+    private static NavException navException(VTDExceptionHuge e) {
+        NavException navException = new NavException(e.getMessage());
+        navException.initCause(e);
+        return navException;
+    }
+}
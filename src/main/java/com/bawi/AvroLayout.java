@@ -0,0 +1,129 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.parser.CustomFieldParser;
+import org.apache.avro.Schema;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves every {@link Entry} of one mapping level to the position and type of its field in an Avro record schema.
+ * <p>
+ * Built and validated once per parser, so {@link AvroResultWriter} never looks fields up by name and mapping errors
+ * (unknown field, record entry for a primitive field, text for a numeric field) surface at construction time.
+ */
+final class AvroLayout {
+
+    static final class Field {
+        final int pos;
+        final boolean repeated;
+        final Schema valueSchema;
+        final AvroLayout record;
+
+        private Field(int pos, boolean repeated, Schema valueSchema, AvroLayout record) {
+            this.pos = pos;
+            this.repeated = repeated;
+            this.valueSchema = valueSchema;
+            this.record = record;
+        }
+    }
+
+    final Schema schema;
+    private final Map<Entry, Field> fields = new IdentityHashMap<>();
+    private final Map<Entry, AvroLayout> records;
+
+    private AvroLayout(Schema schema, Map<Entry, AvroLayout> records) {
+        this.schema = schema;
+        this.records = records;
+    }
+
+    static AvroLayout of(Schema schema, List<Entry> entries) {
+        return of(schema, entries, new IdentityHashMap<>());
+    }
+
+    private static AvroLayout of(Schema schema, List<Entry> entries, Map<Entry, AvroLayout> records) {
+        if (schema.getType() != Schema.Type.RECORD) {
+            throw new IllegalArgumentException("Avro record schema expected but was " + schema);
+        }
+        AvroLayout layout = new AvroLayout(schema, records);
+        for (Entry entry : entries) {
+            Schema.Field avroField = schema.getField(entry.field);
+            if (avroField == null) {
+                throw new IllegalArgumentException("No field " + entry.field + " in Avro schema " + schema.getFullName() + " for entry " + entry);
+            }
+            Schema type = nonNull(avroField.schema());
+            boolean repeated = type.getType() == Schema.Type.ARRAY;
+            Schema valueSchema = repeated ? nonNull(type.getElementType()) : type;
+            AvroLayout record = null;
+            if (entry.children != null && !entry.children.isEmpty()) {
+                if (valueSchema.getType() != Schema.Type.RECORD) {
+                    throw new IllegalArgumentException("Avro record or array of records expected for entry " + entry);
+                }
+                record = of(valueSchema, entry.children, records);
+                AvroLayout previous = records.put(entry, record);
+                if (previous != null && !previous.schema.equals(record.schema)) {
+                    throw new IllegalArgumentException("Entry mapped to different Avro records " + entry);
+                }
+            } else if (!isCustom(entry) && !accepts(valueSchema, ValueType.of(entry.clazz))) {
+                throw new IllegalArgumentException("Avro type " + valueSchema + " does not accept values of entry " + entry);
+            }
+            layout.fields.put(entry, new Field(avroField.pos(), repeated, valueSchema, record));
+        }
+        return layout;
+    }
+
+    Field field(Entry entry) {
+        return fields.get(entry);
+    }
+
+    /**
+     * @return layout of the nested record mapped by the entry, at any depth below this layout
+     */
+    AvroLayout record(Entry entry) {
+        return records.get(entry);
+    }
+
+    /**
+     * @return the non-null branch of a {@code ["null", T]} union, the schema itself otherwise
+     */
+    static Schema nonNull(Schema schema) {
+        if (schema.getType() != Schema.Type.UNION) {
+            return schema;
+        }
+        Schema nonNull = null;
+        for (Schema branch : schema.getTypes()) {
+            if (branch.getType() != Schema.Type.NULL) {
+                if (nonNull != null) {
+                    throw new IllegalArgumentException("Only unions of null and one type are supported but was " + schema);
+                }
+                nonNull = branch;
+            }
+        }
+        return nonNull;
+    }
+
+    private static boolean isCustom(Entry entry) {
+        return entry.clazz != null && CustomFieldParser.class.isAssignableFrom(entry.clazz);
+    }
+
+    private static boolean accepts(Schema schema, ValueType valueType) {
+        switch (schema.getType()) {
+            case STRING:
+            case ENUM:
+                return true;
+            case INT:
+                return valueType == ValueType.INTEGER;
+            case LONG:
+                return valueType == ValueType.INTEGER || valueType == ValueType.LONG || valueType == ValueType.INSTANT;
+            case FLOAT:
+            case DOUBLE:
+                return valueType == ValueType.INTEGER || valueType == ValueType.LONG || valueType == ValueType.DOUBLE;
+            case BOOLEAN:
+                return valueType == ValueType.BOOLEAN;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.bawi;
+
+import com.bawi.ExtractionPlan.Node;
+import com.ximpleware.NavException;
+import com.ximpleware.VTDNav;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes extracted values straight into Avro {@link GenericRecord}s laid out by an {@link AvroLayout}.
+ * <p>
+ * Values are converted to the Avro field type while reading the token, so numbers go from the document bytes into
+ * the record without an intermediate {@code String} or map. Array fields collect all matches, other fields keep the
+ * first match. Fields that did not match, or that no entry maps, take their Avro default value.
+ */
+final class AvroResultWriter implements ResultWriter<GenericRecord> {
+
+    private static final class Frame {
+        AvroLayout layout;
+        GenericData.Record record;
+        boolean[] set;
+        AvroLayout.Field field;
+        GenericData.Array<Object> array;
+    }
+
+    private final AvroLayout root;
+    private final List<Frame> frames = new ArrayList<>();
+    private int depth = -1;
+
+    AvroResultWriter(AvroLayout root) {
+        this.root = root;
+    }
+
+    @Override
+    public void reset() {
+        depth = -1;
+    }
+
+    @Override
+    public void begin(RecordSchema schema, Node record) {
+        AvroLayout layout = record == null ? root : root.record(record.entry);
+        depth++;
+        if (depth == frames.size()) {
+            frames.add(new Frame());
+        }
+        Frame frame = frames.get(depth);
+        frame.layout = layout;
+        frame.record = new GenericData.Record(layout.schema);
+        int size = layout.schema.getFields().size();
+        if (frame.set == null || frame.set.length < size) {
+            frame.set = new boolean[size];
+        } else {
+            Arrays.fill(frame.set, 0, size, false);
+        }
+    }
+
+    @Override
+    public void startField(Node node) {
+        Frame frame = frames.get(depth);
+        frame.field = frame.layout.field(node.entry);
+        frame.array = frame.field.repeated ? new GenericData.Array<>(4, Schema.createArray(frame.field.valueSchema)) : null;
+    }
+
+    @Override
+    public void value(Node node, VTDNav nav, int tokenIdx) throws NavException {
+        Schema schema = frames.get(depth).field.valueSchema;
+        Object value;
+        switch (schema.getType()) {
+            case INT:
+                value = (int) node.valueType.extractLong(nav, tokenIdx);
+                break;
+            case LONG:
+                value = node.valueType.extractLong(nav, tokenIdx);
+                break;
+            case FLOAT:
+                value = (float) node.valueType.extractDouble(nav, tokenIdx);
+                break;
+            case DOUBLE:
+                value = node.valueType.extractDouble(nav, tokenIdx);
+                break;
+            case BOOLEAN:
+                value = node.valueType.extractLong(nav, tokenIdx) != 0;
+                break;
+            default:
+                value = convert(schema, node.valueType == ValueType.STRING ? nav.toString(tokenIdx) : node.valueType.extract(nav, tokenIdx));
+        }
+        add(value);
+    }
+
+    @Override
+    public void value(Node node, Object value) {
+        add(convert(frames.get(depth).field.valueSchema, value));
+    }
+
+    @Override
+    public void longValue(Node node, long value) {
+        if (node.fieldType == RecordSchema.FieldType.INT) {
+            value(node, (int) value);
+        } else {
+            value(node, value);
+        }
+    }
+
+    @Override
+    public void doubleValue(Node node, double value) {
+        value(node, value);
+    }
+
+    private void add(Object value) {
+        Frame frame = frames.get(depth);
+        if (frame.array != null) {
+            frame.array.add(value);
+        } else if (!frame.set[frame.field.pos]) {
+            frame.record.put(frame.field.pos, value);
+            frame.set[frame.field.pos] = true;
+        }
+    }
+
+    @Override
+    public void endField(Node node) {
+        Frame frame = frames.get(depth);
+        if (frame.array != null) {
+            frame.record.put(frame.field.pos, frame.array);
+            frame.set[frame.field.pos] = true;
+            frame.array = null;
+        }
+    }
+
+    @Override
+    public GenericRecord end() {
+        Frame frame = frames.get(depth--);
+        List<Schema.Field> fields = frame.layout.schema.getFields();
+        for (int pos = 0; pos < fields.size(); pos++) {
+            if (!frame.set[pos] && fields.get(pos).defaultVal() != null) {
+                frame.record.put(pos, GenericData.get().getDefaultValue(fields.get(pos)));
+            }
+        }
+        GenericData.Record record = frame.record;
+        frame.record = null;
+        return record;
+    }
+
+    private static Object convert(Schema schema, Object value) {
+        switch (schema.getType()) {
+            case INT:
+                return ((Number) value).intValue();
+            case LONG:
+                return value instanceof Instant ? ((Instant) value).toEpochMilli() : ((Number) value).longValue();
+            case FLOAT:
+                return ((Number) value).floatValue();
+            case DOUBLE:
+                return ((Number) value).doubleValue();
+            case STRING:
+                return value.toString();
+            case ENUM:
+                return new GenericData.EnumSymbol(schema, value.toString());
+            default:
+                return value;
+        }
+    }
+}
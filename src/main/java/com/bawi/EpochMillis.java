@@ -0,0 +1,161 @@
+package com.bawi;
+
+import com.ximpleware.IByteBuffer;
+
+/**
+ * Allocation free ISO-8601 date/date-time parser working on the raw bytes of an ASCII compatible document.
+ * <p>
+ * Accepts {@code yyyy-MM-dd} optionally followed by {@code THH:mm[:ss[.fraction]]} and {@code Z} or
+ * {@code ±HH:mm}, surrounded by optional whitespace. Anything else returns {@link #INVALID} so the caller can fall
+ * back to {@code java.time}.
+ */
+final class EpochMillis {
+
+    static final long INVALID = Long.MIN_VALUE;
+
+    private EpochMillis() {
+    }
+
+    static long parse(IByteBuffer xml, int from, int to) {
+        while (from < to && isWhitespace(xml.byteAt(from))) {
+            from++;
+        }
+        while (to > from && isWhitespace(xml.byteAt(to - 1))) {
+            to--;
+        }
+        if (to - from < 10 || xml.byteAt(from + 4) != '-' || xml.byteAt(from + 7) != '-') {
+            return INVALID;
+        }
+        int year = digits(xml, from, 4);
+        int month = digits(xml, from + 5, 2);
+        int day = digits(xml, from + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return INVALID;
+        }
+        long millis = daysFromCivil(year, month, day) * 86_400_000L;
+        int pos = from + 10;
+        if (pos == to) {
+            return millis;
+        }
+        if (xml.byteAt(pos) != 'T' || to - pos < 6 || xml.byteAt(pos + 3) != ':') {
+            return INVALID;
+        }
+        int hour = digits(xml, pos + 1, 2);
+        int minute = digits(xml, pos + 4, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return INVALID;
+        }
+        millis += hour * 3_600_000L + minute * 60_000L;
+        pos += 6;
+        if (pos < to && xml.byteAt(pos) == ':') {
+            int second = pos + 3 <= to ? digits(xml, pos + 1, 2) : -1;
+            if (second < 0 || second > 59) {
+                return INVALID;
+            }
+            millis += second * 1_000L;
+            pos += 3;
+            if (pos < to && (xml.byteAt(pos) == '.' || xml.byteAt(pos) == ',')) {
+                pos++;
+                int fraction = 0;
+                int scale = 100;
+                int start = pos;
+                while (pos < to && isDigit(xml.byteAt(pos))) {
+                    fraction += (xml.byteAt(pos) - '0') * scale;
+                    scale /= 10;
+                    pos++;
+                }
+                if (pos == start) {
+                    return INVALID;
+                }
+                millis += fraction;
+            }
+        }
+        if (pos == to) {
+            return millis;
+        }
+        byte zone = xml.byteAt(pos);
+        if (zone == 'Z' && pos + 1 == to) {
+            return millis;
+        }
+        if ((zone == '+' || zone == '-') && to - pos == 6 && xml.byteAt(pos + 3) == ':') {
+            int offsetHour = digits(xml, pos + 1, 2);
+            int offsetMinute = digits(xml, pos + 4, 2);
+            if (offsetHour < 0 || offsetHour > 18 || offsetMinute < 0 || offsetMinute > 59) {
+                return INVALID;
+            }
+            long offset = offsetHour * 3_600_000L + offsetMinute * 60_000L;
+            return zone == '+' ? millis - offset : millis + offset;
+        }
+        return INVALID;
+    }
+
+    /**
+     * Exposes one token of a huge document as a small {@link IByteBuffer} starting at index 0.
+     */
+    static IByteBuffer slice(com.ximpleware.extended.IByteBuffer xml, long offset, int length) {
+        return new IByteBuffer() {
+            @Override
+            public byte byteAt(int index) {
+                return xml.byteAt(offset + index);
+            }
+
+            @Override
+            public byte[] getBytes(int from, int len) {
+                byte[] bytes = new byte[len];
+                for (int i = 0; i < len; i++) {
+                    bytes[i] = byteAt(from + i);
+                }
+                return bytes;
+            }
+
+            @Override
+            public int length() {
+                return length;
+            }
+
+            @Override
+            public byte[] getBytes() {
+                return getBytes(0, length);
+            }
+        };
+    }
+
+    private static int digits(IByteBuffer xml, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            byte b = xml.byteAt(i);
+            if (!isDigit(b)) {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date (H. Hinnant's days_from_civil).
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+}
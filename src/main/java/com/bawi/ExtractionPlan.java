@@ -0,0 +1,904 @@
+package com.bawi;
+
+import com.bawi.RecordSchema.FieldType;
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.metrics.ParserMetrics;
+import com.bawi.parser.CustomFieldParser;
+import com.bawi.parser.FieldEvaluator;
+import com.bawi.parser.DoubleFieldParser;
+import com.bawi.parser.IntFieldParser;
+import com.bawi.parser.LongFieldParser;
+import com.ximpleware.*;
+import com.ximpleware.extended.AutoPilotHuge;
+import com.ximpleware.extended.VTDExceptionHuge;
+import com.ximpleware.extended.VTDGenHuge;
+import com.ximpleware.extended.VTDNavHuge;
+import com.ximpleware.extended.XPathParseExceptionHuge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable, precompiled form of an {@link Entry} mapping tree.
+ * <p>
+ * Everything that only depends on the mapping (entry kind, attribute vs text extraction, {@link ValueType},
+ * custom parser instance) is resolved once in {@link #compile(List)}. The XPath expressions themselves are
+ * compiled into {@link AutoPilot}s held by a {@link Context}: a context is created once and then only bound to
+ * a {@link VTDNav} and reset for every document, so {@code selectXPath} never runs on the parse path.
+ * <p>
+ * Simple relative child and attribute paths of sibling entries are not evaluated with one {@link AutoPilot} each but
+ * collected together by a {@link PathWalker} in one walk over the record element; {@code AutoPilot}s remain for
+ * real XPath expressions and custom parsers.
+ * <p>
+ * Documents above the {@code VTDGen} size limit are evaluated against the same nodes through a {@link HugeContext}
+ * holding {@link AutoPilotHuge}s.
+ * <p>
+ * Results are assembled by a {@link ResultWriter}, so the same evaluation produces maps, {@link Record}s or any
+ * other output type. Each level of the mapping has a {@link RecordSchema} with the fields numbered in mapping order.
+ * <p>
+ * Every node evaluation is reported to {@link ParserMetrics} under the field {@link Node#path}. With
+ * {@link ParserMetrics#NOOP} the clock is never read. Values collected by a {@link PathWalker} are gathered during the
+ * walk of the enclosing record, so their evaluation time only covers emitting the values.
+ * <p>
+ * The plan can be shared freely, a {@link Context} must be confined to one thread at a time.
+ */
+final class ExtractionPlan {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExtractionPlan.class);
+
+    enum Kind { RECORD, CUSTOM, VALUE }
+
+    static final class Node {
+        final Entry entry;
+        /** Field names from the mapping root joined with {@code /}, the metrics key of the node. */
+        final String path;
+        final Kind kind;
+        final int slot;
+        final int index;
+        final boolean attribute;
+        final ValueType valueType;
+        final FieldType fieldType;
+        final CustomFieldParser parser;
+        final List<Node> children;
+        final RecordSchema schema;
+        final boolean walkable;
+        final String childElement;
+        final PathWalker walker;
+        /** The xpath matches at most once per record, so evaluation stops at the first match. */
+        final boolean single;
+        /**
+         * The {@code AutoPilot} evaluation leaves the cursor away from the context element, either on the first match
+         * or, for absolute xpaths, wherever the walk from the root ended, so it is wrapped in push and pop.
+         */
+        final boolean restoreCursor;
+
+        private Node(Entry entry, String path, Kind kind, int slot, int index, ValueType valueType,
+                     CustomFieldParser parser, List<Node> children) {
+            this.entry = entry;
+            this.path = path;
+            this.kind = kind;
+            this.slot = slot;
+            this.index = index;
+            this.attribute = entry.xpath.startsWith("@") || entry.xpath.contains("/@");
+            this.valueType = valueType;
+            this.fieldType = kind == Kind.RECORD ? FieldType.RECORD : kind == Kind.CUSTOM ? customFieldType(parser) : FieldType.of(valueType);
+            this.parser = parser;
+            this.children = children;
+            this.schema = kind == Kind.RECORD ? schemaOf(children) : null;
+            this.walkable = PathWalker.simplePath(entry.xpath) != null && !(kind == Kind.RECORD && attribute);
+            this.childElement = walkable && kind == Kind.RECORD && entry.xpath.indexOf('/') < 0 && entry.xpath.indexOf('[') < 0
+                    ? entry.xpath : null;
+            this.walker = kind == Kind.RECORD ? PathWalker.of(children) : null;
+            this.single = SINGLE_MATCH.matcher(entry.xpath).matches();
+            this.restoreCursor = single || entry.xpath.startsWith("/");
+        }
+    }
+
+    private static final String NAME = "[A-Za-z_][A-Za-z0-9_.-]*";
+
+    /** Child steps selecting one position ({@code staff[1]/address[2]}), optionally followed by an attribute. */
+    private static final Pattern SINGLE_MATCH = Pattern.compile("(?:" + NAME + "\\[[1-9][0-9]*\\]/)*(?:" + NAME + "\\[[1-9][0-9]*\\]|@" + NAME + ")");
+
+    /** Name and optional predicate of the first step of a relative path, see {@link #keptRootChildren()}. */
+    private static final Pattern FIRST_STEP = Pattern.compile("(" + NAME + ")(?:\\[[^\\]]*\\])?(?:/.*)?");
+
+    /**
+     * Primitive custom parsers are stored in primitive columns like the corresponding value types.
+     */
+    private static FieldType customFieldType(CustomFieldParser parser) {
+        if (parser instanceof IntFieldParser) {
+            return FieldType.INT;
+        }
+        if (parser instanceof LongFieldParser) {
+            return FieldType.LONG;
+        }
+        return parser instanceof DoubleFieldParser ? FieldType.DOUBLE : FieldType.CUSTOM;
+    }
+
+    /**
+     * Per-thread evaluation state: one precompiled {@link AutoPilot} and one {@link PathWalker} match list per plan
+     * node, and an evaluator wrapping the {@link AutoPilot} of every custom node.
+     */
+    static final class Context {
+        private final AutoPilot[] pilots;
+        private final AutoPilotFieldEvaluator[] evaluators;
+        private final List<com.ximpleware.xpath.Step> stepPilots = new ArrayList<>();
+        private final int[][] matches;
+        private final int[] matchCounts;
+
+        private Context(AutoPilot[] pilots, AutoPilotFieldEvaluator[] evaluators) {
+            this.pilots = pilots;
+            this.evaluators = evaluators;
+            this.matches = new int[pilots.length][];
+            this.matchCounts = new int[pilots.length];
+            for (AutoPilot pilot : pilots) {
+                stepPilots.addAll(XPathStepPilots.of(pilot));
+            }
+        }
+
+        AutoPilot pilot(int slot) {
+            return pilots[slot];
+        }
+
+        int[] matches(int slot) {
+            return matches[slot];
+        }
+
+        int matchCount(int slot) {
+            return matchCounts[slot];
+        }
+
+        void clearMatches(int slot) {
+            matchCounts[slot] = 0;
+        }
+
+        /**
+         * Binds the pilots to an empty document and drops the pilots cached by their steps, see
+         * {@link XPathStepPilots}, so an idle context does not keep the last document alive.
+         */
+        void unbind() {
+            for (AutoPilot pilot : pilots) {
+                pilot.bind(EMPTY_NAV);
+            }
+            for (com.ximpleware.xpath.Step step : stepPilots) {
+                step.o = null;
+            }
+            for (AutoPilotFieldEvaluator evaluator : evaluators) {
+                if (evaluator != null) {
+                    evaluator.unbind();
+                }
+            }
+        }
+
+        void addMatch(int slot, int index) {
+            int[] slotMatches = matches[slot];
+            int count = matchCounts[slot];
+            if (slotMatches == null) {
+                slotMatches = matches[slot] = new int[4];
+            } else if (count == slotMatches.length) {
+                slotMatches = matches[slot] = Arrays.copyOf(slotMatches, count * 2);
+            }
+            slotMatches[count] = index;
+            matchCounts[slot] = count + 1;
+        }
+    }
+
+    /**
+     * Evaluation state for documents parsed with {@code VTDGenHuge}, see {@link #newContext()}.
+     */
+    static final class HugeContext {
+        private final AutoPilotHuge[] pilots;
+        private final AutoPilotHugeFieldEvaluator[] evaluators;
+        private final List<com.ximpleware.extended.xpath.Step> stepPilots = new ArrayList<>();
+
+        private HugeContext(AutoPilotHuge[] pilots, AutoPilotHugeFieldEvaluator[] evaluators) {
+            this.pilots = pilots;
+            this.evaluators = evaluators;
+            for (AutoPilotHuge pilot : pilots) {
+                stepPilots.addAll(XPathStepPilots.of(pilot));
+            }
+        }
+
+        /**
+         * Same as {@link Context#unbind()}, so an idle context does not keep the mapped file or the off-heap blocks of
+         * the last document alive.
+         */
+        void unbind() {
+            for (AutoPilotHuge pilot : pilots) {
+                pilot.bind(EMPTY_HUGE_NAV);
+            }
+            for (com.ximpleware.extended.xpath.Step step : stepPilots) {
+                step.o = null;
+            }
+            for (AutoPilotHugeFieldEvaluator evaluator : evaluators) {
+                if (evaluator != null) {
+                    evaluator.unbind();
+                }
+            }
+        }
+    }
+
+    /** Navigator of a one element document that the pilots of idle {@link Context}s are bound to. */
+    static final VTDNav EMPTY_NAV = emptyNav();
+
+    /** Same as {@link #EMPTY_NAV} for idle {@link HugeContext}s. */
+    private static final VTDNavHuge EMPTY_HUGE_NAV = emptyHugeNav();
+
+    private final List<Node> nodes;
+    private final Node[] slots;
+    private final String[] xpaths;
+    private final RecordSchema schema;
+    private final PathWalker walker;
+    private final ParserMetrics metrics;
+    private final boolean timed;
+
+    private ExtractionPlan(List<Node> nodes, String[] xpaths, ParserMetrics metrics) {
+        this.nodes = nodes;
+        this.xpaths = xpaths;
+        this.slots = new Node[xpaths.length];
+        indexSlots(nodes);
+        this.schema = schemaOf(nodes);
+        this.walker = PathWalker.of(nodes);
+        this.metrics = metrics;
+        this.timed = metrics.enabled();
+    }
+
+    static ExtractionPlan compile(List<Entry> entries) {
+        return compile(entries, ParserMetrics.NOOP);
+    }
+
+    static ExtractionPlan compile(List<Entry> entries, ParserMetrics metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("Metrics are required, use ParserMetrics.NOOP to disable them");
+        }
+        List<String> xpaths = new ArrayList<>();
+        List<Node> nodes = compile(entries, null, xpaths);
+        ExtractionPlan plan = new ExtractionPlan(nodes, xpaths.toArray(new String[0]), metrics);
+        plan.newContext(); // fail fast on invalid xpath
+        return plan;
+    }
+
+    private static List<Node> compile(List<Entry> entries, String parentPath, List<String> xpaths) {
+        List<Node> nodes = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (entry.field == null || entry.xpath == null) {
+                throw new IllegalArgumentException("Field and xpath are required for entry " + entry);
+            }
+            int slot = xpaths.size();
+            int index = nodes.size();
+            String path = parentPath == null ? entry.field : parentPath + "/" + entry.field;
+            xpaths.add(entry.xpath);
+            if (entry.children != null && entry.children.size() > 0) {
+                nodes.add(new Node(entry, path, Kind.RECORD, slot, index, null, null, compile(entry.children, path, xpaths)));
+            } else if (entry.clazz != null && CustomFieldParser.class.isAssignableFrom(entry.clazz)) {
+                nodes.add(new Node(entry, path, Kind.CUSTOM, slot, index, null, newParser(entry), Collections.emptyList()));
+            } else {
+                ValueType valueType = ValueType.of(entry.clazz);
+                if (valueType == null) {
+                    throw new IllegalArgumentException("Unsupported type for entry " + entry);
+                }
+                nodes.add(new Node(entry, path, Kind.VALUE, slot, index, valueType, null, Collections.emptyList()));
+            }
+        }
+        return Collections.unmodifiableList(nodes);
+    }
+
+    private static RecordSchema schemaOf(List<Node> nodes) {
+        String[] names = new String[nodes.size()];
+        FieldType[] types = new FieldType[nodes.size()];
+        RecordSchema[] children = new RecordSchema[nodes.size()];
+        for (Node node : nodes) {
+            names[node.index] = node.entry.field;
+            types[node.index] = node.fieldType;
+            children[node.index] = node.schema;
+        }
+        return new RecordSchema(names, types, children);
+    }
+
+    /**
+     * Names of the root children that the mapping can read, so all other children can be skipped before tokenizing.
+     * <p>
+     * Every xpath must be relative and stay inside the subtree it starts in (no absolute paths, parent or other
+     * axes), and every top level xpath must be a root attribute or start with a named child step. Same-name siblings
+     * are always kept together, so positional predicates keep their meaning.
+     *
+     * @return the kept names, null when the mapping may read anything in the document
+     */
+    Set<String> keptRootChildren() {
+        for (String xpath : xpaths) {
+            if (xpath.startsWith("/") || xpath.contains("..") || xpath.contains("::")) {
+                return null;
+            }
+        }
+        Set<String> kept = new HashSet<>();
+        for (Node node : nodes) {
+            String xpath = node.entry.xpath;
+            if (xpath.startsWith("@") && xpath.indexOf('/') < 0 && xpath.indexOf('[') < 0) {
+                continue;
+            }
+            Matcher matcher = FIRST_STEP.matcher(xpath);
+            if (!matcher.matches()) {
+                return null;
+            }
+            kept.add(matcher.group(1));
+        }
+        return kept;
+    }
+
+    List<Node> nodes() {
+        return nodes;
+    }
+
+    RecordSchema schema() {
+        return schema;
+    }
+
+    ParserMetrics metrics() {
+        return metrics;
+    }
+
+    private void indexSlots(List<Node> nodes) {
+        for (Node node : nodes) {
+            slots[node.slot] = node;
+            indexSlots(node.children);
+        }
+    }
+
+    /**
+     * Custom parsers are instantiated once per entry and shared by every document and thread.
+     */
+    private static CustomFieldParser newParser(Entry entry) {
+        Constructor<?> constructor;
+        try {
+            constructor = entry.clazz.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Missing no-arg constructor for entry " + entry, e);
+        }
+        try {
+            return (CustomFieldParser) constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Failed to create custom parser for entry " + entry, e);
+        }
+    }
+
+    private static VTDNav emptyNav() {
+        VTDGen vtdGen = new VTDGen();
+        vtdGen.setDoc("<empty/>".getBytes(StandardCharsets.US_ASCII));
+        try {
+            vtdGen.parse(false);
+        } catch (ParseException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        return vtdGen.getNav();
+    }
+
+    private static VTDNavHuge emptyHugeNav() {
+        VTDGenHuge vtdGen = new VTDGenHuge();
+        vtdGen.setDoc(SegmentedXmlBuffer.wrap(ByteBuffer.wrap("<empty/>".getBytes(StandardCharsets.US_ASCII))));
+        try {
+            vtdGen.parse(false);
+        } catch (VTDExceptionHuge e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        return vtdGen.getNav();
+    }
+
+    Context newContext() {
+        AutoPilot[] pilots = new AutoPilot[xpaths.length];
+        AutoPilotFieldEvaluator[] evaluators = new AutoPilotFieldEvaluator[xpaths.length];
+        for (int i = 0; i < xpaths.length; i++) {
+            AutoPilot ap = new AutoPilot();
+            try {
+                ap.selectXPath(xpaths[i]); // selectXPath is heavy operation, done once per context
+            } catch (XPathParseException e) {
+                throw new IllegalArgumentException("Invalid xpath " + xpaths[i], e);
+            }
+            pilots[i] = ap;
+            if (slots[i].kind == Kind.CUSTOM) {
+                evaluators[i] = new AutoPilotFieldEvaluator(slots[i], ap);
+            }
+        }
+        return new Context(pilots, evaluators);
+    }
+
+    HugeContext newHugeContext() {
+        AutoPilotHuge[] pilots = new AutoPilotHuge[xpaths.length];
+        AutoPilotHugeFieldEvaluator[] evaluators = new AutoPilotHugeFieldEvaluator[xpaths.length];
+        for (int i = 0; i < xpaths.length; i++) {
+            AutoPilotHuge ap = new AutoPilotHuge();
+            try {
+                ap.selectXPath(xpaths[i]);
+            } catch (XPathParseExceptionHuge e) {
+                throw new IllegalArgumentException("Invalid xpath " + xpaths[i], e);
+            }
+            pilots[i] = ap;
+            if (slots[i].kind == Kind.CUSTOM) {
+                evaluators[i] = new AutoPilotHugeFieldEvaluator(slots[i], ap);
+            }
+        }
+        return new HugeContext(pilots, evaluators);
+    }
+
+    <R> R evaluate(VTDNav nav, Context context, ResultWriter<R> writer) {
+        return evaluate(nav, context, writer, null);
+    }
+
+    /**
+     * @param parallel evaluates the records of top level record entries concurrently when not null
+     */
+    <R> R evaluate(VTDNav nav, Context context, ResultWriter<R> writer, ParallelRecords<R> parallel) {
+        long start = timed ? System.nanoTime() : 0;
+        writer.reset();
+        R result = evaluate(nav, context, null, writer, parallel);
+        if (timed) {
+            metrics.documentMapped(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates the record entry at the current element of the navigator into a result of its own.
+     */
+    <R> R evaluateRecord(VTDNav nav, Context context, Node record, ResultWriter<R> writer) {
+        writer.reset();
+        return evaluate(nav, context, record, writer, null);
+    }
+
+    private <R> R evaluate(VTDNav nav, Context context, Node record, ResultWriter<R> writer, ParallelRecords<R> parallel) {
+        RecordSchema schema = record == null ? this.schema : record.schema;
+        List<Node> nodes = record == null ? this.nodes : record.children;
+        PathWalker walker = record == null ? this.walker : record.walker;
+        if (walker != null) {
+            try {
+                walker.collect(nav, context);
+            } catch (NavException e) {
+                LOGGER.error("Failed to walk record " + schema, e);
+            }
+        }
+        writer.begin(schema, record);
+        for (Node node : nodes) {
+            evaluateField(nav, context, node, writer, parallel, node.walkable);
+        }
+        return writer.end();
+    }
+
+    /**
+     * Evaluates one top level entry on its own, into a result holding only its field. The matches of walkable
+     * entries are not collected up front, so every entry is evaluated with its own {@link AutoPilot} or, for direct
+     * child records, with sibling moves.
+     */
+    <R> R evaluateField(VTDNav nav, Context context, Node node, ResultWriter<R> writer) {
+        writer.reset();
+        writer.begin(schema, null);
+        evaluateField(nav, context, node, writer, null, false);
+        return writer.end();
+    }
+
+    private <R> void evaluateField(VTDNav nav, Context context, Node node, ResultWriter<R> writer, ParallelRecords<R> parallel,
+                                   boolean walked) {
+        long start = timed ? System.nanoTime() : 0;
+        int matches;
+        writer.startField(node);
+        switch (node.kind) {
+            case RECORD:
+                if (parallel != null) {
+                    matches = processRecordsInParallel(nav, context, node, writer, parallel);
+                } else if (walked || node.childElement != null) {
+                    matches = processWalkedRecords(nav, context, node, writer);
+                } else {
+                    matches = processRecord(nav, context, node, writer);
+                }
+                break;
+            case CUSTOM:
+                matches = parseField(nav, context, node, writer, walked);
+                break;
+            default:
+                if (walked) {
+                    matches = extractWalkedValues(nav, context, node, writer);
+                } else {
+                    matches = extractValue(nav, context, node, writer);
+                }
+        }
+        writer.endField(node);
+        if (timed) {
+            metrics.entryEvaluated(node.path, matches, System.nanoTime() - start);
+        }
+    }
+
+    void entryFailed(Node node, Throwable e) {
+        if (timed) {
+            metrics.entryFailed(node.path, e);
+        }
+    }
+
+    private <R> int processWalkedRecords(VTDNav nav, Context context, Node node, ResultWriter<R> writer) {
+        if (node.childElement != null) {
+            return processChildRecords(nav, context, node, writer);
+        }
+        int[] elements = context.matches[node.slot];
+        int count = context.matchCounts[node.slot];
+        if (count == 0) {
+            return 0;
+        }
+        nav.push();
+        try {
+            for (int i = 0; i < count; i++) {
+                nav.recoverNode(elements[i]);
+                writer.value(node, evaluate(nav, context, node, writer, null));
+            }
+        } catch (NavException e) {
+            LOGGER.error("Failed to process record for entry " + node.entry, e);
+            entryFailed(node, e);
+        } finally {
+            nav.pop();
+        }
+        return count;
+    }
+
+    /**
+     * Records that are direct children of the current element are visited with sibling moves rather than
+     * {@link VTDNav#recoverNode(int)}, which has to search for the ancestors of deep elements.
+     */
+    private <R> int processChildRecords(VTDNav nav, Context context, Node node, ResultWriter<R> writer) {
+        int count = 0;
+        nav.push();
+        try {
+            if (nav.toElement(VTDNav.FIRST_CHILD, node.childElement)) {
+                do {
+                    writer.value(node, evaluate(nav, context, node, writer, null));
+                    count++;
+                } while (nav.toElement(VTDNav.NEXT_SIBLING, node.childElement));
+            }
+        } catch (NavException e) {
+            LOGGER.error("Failed to process record for entry " + node.entry, e);
+            entryFailed(node, e);
+        } finally {
+            nav.pop();
+        }
+        return count;
+    }
+
+    /**
+     * Collects the element indexes of all records first, then evaluates them in parallel and adds the results in
+     * document order.
+     */
+    private <R> int processRecordsInParallel(VTDNav nav, Context context, Node node, ResultWriter<R> writer, ParallelRecords<R> parallel) {
+        if (node.childElement != null) {
+            context.clearMatches(node.slot);
+            nav.push();
+            try {
+                if (nav.toElement(VTDNav.FIRST_CHILD, node.childElement)) {
+                    do {
+                        context.addMatch(node.slot, nav.getCurrentIndex());
+                    } while (nav.toElement(VTDNav.NEXT_SIBLING, node.childElement));
+                }
+            } catch (NavException e) {
+                LOGGER.error("Failed to process record for entry " + node.entry, e);
+                entryFailed(node, e);
+            } finally {
+                nav.pop();
+            }
+        } else if (!node.walkable) {
+            context.clearMatches(node.slot);
+            AutoPilot ap = context.pilots[node.slot];
+            ap.bind(nav);
+            try {
+                while (ap.evalXPath() > 0) {
+                    context.addMatch(node.slot, nav.getCurrentIndex());
+                }
+            } catch (VTDException e) {
+                LOGGER.error("Failed to process record for entry " + node.entry, e);
+                entryFailed(node, e);
+            } finally {
+                ap.resetXPath();
+            }
+        }
+        int count = context.matchCounts[node.slot];
+        if (count == 0) {
+            return 0;
+        }
+        for (R result : parallel.evaluate(nav, node, Arrays.copyOf(context.matches[node.slot], count))) {
+            writer.value(node, result);
+        }
+        return count;
+    }
+
+    private <R> int extractWalkedValues(VTDNav nav, Context context, Node node, ResultWriter<R> writer) {
+        int[] tokens = context.matches[node.slot];
+        int count = context.matchCounts[node.slot];
+        try {
+            for (int i = 0; i < count; i++) {
+                writer.value(node, nav, tokens[i]);
+            }
+        } catch (NavException e) {
+            LOGGER.error("Failed to extract value for entry " + node.entry, e);
+            entryFailed(node, e);
+        }
+        return count;
+    }
+
+    private <R> int processRecord(VTDNav nav, Context context, Node node, ResultWriter<R> writer) {
+        int count = 0;
+        AutoPilot ap = context.pilots[node.slot];
+        ap.bind(nav);
+        if (node.restoreCursor) {
+            nav.push();
+        }
+        try {
+            while (ap.evalXPath() > 0) { // requires a while loop, not if statement
+                writer.value(node, evaluate(nav, context, node, writer, null));
+                count++;
+                if (node.single) {
+                    break;
+                }
+            }
+        } catch (VTDException e) {
+            LOGGER.error("Failed to process record for entry " + node.entry, e);
+            entryFailed(node, e);
+        } finally {
+            ap.resetXPath();
+            if (node.restoreCursor) {
+                nav.pop();
+            }
+        }
+        return count;
+    }
+
+    private <R> int parseField(VTDNav nav, Context context, Node node, ResultWriter<R> writer, boolean walked) {
+        AutoPilotFieldEvaluator evaluator = context.evaluators[node.slot];
+        evaluator.bind(nav);
+        if (walked) {
+            evaluator.bindMatches(context.matches[node.slot], context.matchCounts[node.slot]);
+        }
+        nav.push(); // a parser that stops before the last match leaves the cursor there
+        try {
+            return parseField(evaluator, node, writer);
+        } catch (Exception e) {
+            LOGGER.error("Failed to parse value for entry " + node.entry, e);
+            entryFailed(node, e);
+        } finally {
+            evaluator.reset();
+            nav.pop();
+        }
+        return 0;
+    }
+
+    /**
+     * @return number of values written, primitive custom parsers always produce one
+     */
+    private static <R> int parseField(FieldEvaluator evaluator, Node node, ResultWriter<R> writer) throws VTDException {
+        switch (node.fieldType) {
+            case INT:
+                writer.longValue(node, ((IntFieldParser) node.parser).parseInt(evaluator));
+                return 1;
+            case LONG:
+                writer.longValue(node, ((LongFieldParser) node.parser).parseLong(evaluator));
+                return 1;
+            case DOUBLE:
+                writer.doubleValue(node, ((DoubleFieldParser) node.parser).parseDouble(evaluator));
+                return 1;
+            default:
+                Object value = node.parser.parse(evaluator);
+                if (value == null) {
+                    return 0;
+                }
+                writer.value(node, value);
+                return 1;
+        }
+    }
+
+    private <R> int extractValue(VTDNav nav, Context context, Node node, ResultWriter<R> writer) {
+        int count = 0;
+        AutoPilot ap = context.pilots[node.slot];
+        ap.bind(nav);
+        if (node.restoreCursor) {
+            nav.push();
+        }
+        try {
+            if (node.attribute) {
+                int i;
+                while ((i = ap.evalXPath()) > 0) { // requires a while loop, not if statement
+                    writer.value(node, nav, i + 1); // attribute value token follows its name
+                    count++;
+                    if (node.single) {
+                        break;
+                    }
+                }
+            } else {
+                while (ap.evalXPath() != -1) { // requires a while loop, not if statement
+                    int textTokenIdx = nav.getText();
+                    if (textTokenIdx != -1) {
+                        writer.value(node, nav, textTokenIdx);
+                        count++;
+                    }
+                    if (node.single) {
+                        break;
+                    }
+                }
+            }
+        } catch (VTDException e) {
+            LOGGER.error("Failed to extract value for entry " + node.entry, e);
+            entryFailed(node, e);
+        } finally {
+            ap.resetXPath();
+            if (node.restoreCursor) {
+                nav.pop();
+            }
+        }
+        return count;
+    }
+
+    <R> R evaluate(VTDNavHuge nav, HugeContext context, ResultWriter<R> writer) {
+        return evaluate(nav, context, writer, null);
+    }
+
+    /**
+     * @param parallel evaluates the records of top level record entries concurrently when not null
+     */
+    <R> R evaluate(VTDNavHuge nav, HugeContext context, ResultWriter<R> writer, ParallelRecords<R> parallel) {
+        long start = timed ? System.nanoTime() : 0;
+        writer.reset();
+        R result = evaluate(nav, context, null, writer, parallel);
+        if (timed) {
+            metrics.documentMapped(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates the record entry at the current element of the navigator into a result of its own.
+     */
+    <R> R evaluateRecord(VTDNavHuge nav, HugeContext context, Node record, ResultWriter<R> writer) {
+        writer.reset();
+        return evaluate(nav, context, record, writer, null);
+    }
+
+    private <R> R evaluate(VTDNavHuge nav, HugeContext context, Node record, ResultWriter<R> writer, ParallelRecords<R> parallel) {
+        writer.begin(record == null ? schema : record.schema, record);
+        for (Node node : record == null ? nodes : record.children) {
+            long start = timed ? System.nanoTime() : 0;
+            int matches;
+            writer.startField(node);
+            switch (node.kind) {
+                case RECORD:
+                    if (parallel != null) {
+                        matches = processRecordsInParallel(nav, context, node, writer, parallel);
+                    } else {
+                        matches = processRecord(nav, context, node, writer);
+                    }
+                    break;
+                case CUSTOM:
+                    matches = parseField(nav, context, node, writer);
+                    break;
+                default:
+                    matches = extractValue(nav, context, node, writer);
+            }
+            writer.endField(node);
+            if (timed) {
+                metrics.entryEvaluated(node.path, matches, System.nanoTime() - start);
+            }
+        }
+        return writer.end();
+    }
+
+    private <R> int processRecord(VTDNavHuge nav, HugeContext context, Node node, ResultWriter<R> writer) {
+        int count = 0;
+        AutoPilotHuge ap = context.pilots[node.slot];
+        ap.bind(nav);
+        if (node.restoreCursor) {
+            nav.push();
+        }
+        try {
+            while (ap.evalXPath() > 0) {
+                writer.value(node, evaluate(nav, context, node, writer, null));
+                count++;
+                if (node.single) {
+                    break;
+                }
+            }
+        } catch (VTDExceptionHuge e) {
+            LOGGER.error("Failed to process record for entry " + node.entry, e);
+            entryFailed(node, e);
+        } finally {
+            ap.resetXPath();
+            if (node.restoreCursor) {
+                nav.pop();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * {@code VTDNavHuge} cannot be repositioned from an index, so every match is captured as a cloned navigator.
+     * Clones are evaluated in windows to bound their number.
+     */
+    private <R> int processRecordsInParallel(VTDNavHuge nav, HugeContext context, Node node, ResultWriter<R> writer, ParallelRecords<R> parallel) {
+        int count = 0;
+        AutoPilotHuge ap = context.pilots[node.slot];
+        ap.bind(nav);
+        List<VTDNavHuge> window = new ArrayList<>();
+        try {
+            while (ap.evalXPath() > 0) {
+                window.add(ParallelRecords.cloneNav(nav));
+                count++;
+                if (window.size() == parallel.hugeWindow()) {
+                    for (R result : parallel.evaluate(window, node)) {
+                        writer.value(node, result);
+                    }
+                    window.clear();
+                }
+            }
+        } catch (VTDExceptionHuge e) {
+            LOGGER.error("Failed to process record for entry " + node.entry, e);
+            entryFailed(node, e);
+        } finally {
+            ap.resetXPath();
+        }
+        for (R result : parallel.evaluate(window, node)) {
+            writer.value(node, result);
+        }
+        return count;
+    }
+
+    private <R> int parseField(VTDNavHuge nav, HugeContext context, Node node, ResultWriter<R> writer) {
+        AutoPilotHugeFieldEvaluator evaluator = context.evaluators[node.slot];
+        evaluator.bind(nav);
+        nav.push();
+        try {
+            return parseField(evaluator, node, writer);
+        } catch (Exception e) {
+            LOGGER.error("Failed to parse value for entry " + node.entry, e);
+            entryFailed(node, e);
+        } finally {
+            evaluator.reset();
+            nav.pop();
+        }
+        return 0;
+    }
+
+    private <R> int extractValue(VTDNavHuge nav, HugeContext context, Node node, ResultWriter<R> writer) {
+        int count = 0;
+        AutoPilotHuge ap = context.pilots[node.slot];
+        ap.bind(nav);
+        if (node.restoreCursor) {
+            nav.push();
+        }
+        try {
+            if (node.attribute) {
+                int i;
+                while ((i = ap.evalXPath()) > 0) {
+                    writer.value(node, node.valueType.extract(nav, i + 1));
+                    count++;
+                    if (node.single) {
+                        break;
+                    }
+                }
+            } else {
+                while (ap.evalXPath() != -1) {
+                    int textTokenIdx = nav.getText();
+                    if (textTokenIdx != -1) {
+                        writer.value(node, node.valueType.extract(nav, textTokenIdx));
+                        count++;
+                    }
+                    if (node.single) {
+                        break;
+                    }
+                }
+            }
+        } catch (VTDExceptionHuge e) {
+            LOGGER.error("Failed to extract value for entry " + node.entry, e);
+            entryFailed(node, e);
+        } finally {
+            ap.resetXPath();
+            if (node.restoreCursor) {
+                nav.pop();
+            }
+        }
+        return count;
+    }
+}
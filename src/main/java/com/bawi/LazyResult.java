@@ -0,0 +1,160 @@
+package com.bawi;
+
+import com.bawi.ExtractionPlan.Node;
+import com.bawi.ParserStatePool.ParserState;
+import com.ximpleware.VTDNav;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@code Map<String, Object>} result of {@link VtdXmlParser#parseLazy(byte[])} that maps each top level entry only
+ * when its field is first read.
+ * <p>
+ * The view holds the tokenized document: the pooled {@link com.ximpleware.VTDGen} state of the parse and, since
+ * documents are tokenized in place, the caller's array. Reading a field evaluates its entry, nested records
+ * included, and caches the value; reading keys, the size or membership evaluates nothing. Values equal those of
+ * {@link VtdXmlParser#parseXml(byte[])}, so a view equals the eagerly parsed map once compared.
+ * <p>
+ * {@link #close()} hands the parser state back to the pool, after which only fields already read are available.
+ * {@link #detach()} maps the remaining entries into an ordinary map and closes the view. A view that is never
+ * closed is simply garbage collected together with its state. Views are not thread-safe.
+ */
+public final class LazyResult extends AbstractMap<String, Object> implements AutoCloseable {
+
+    private static final Object UNEVALUATED = new Object();
+
+    private final AbstractVtdXmlParser<Map<String, Object>> parser;
+    private final List<Node> nodes;
+    private final Object[] values;
+    private ParserState<Map<String, Object>> state;
+    private VTDNav nav;
+
+    LazyResult(AbstractVtdXmlParser<Map<String, Object>> parser, ParserState<Map<String, Object>> state) {
+        this.parser = parser;
+        this.nodes = parser.plan().nodes();
+        this.values = new Object[nodes.size()];
+        Arrays.fill(values, UNEVALUATED);
+        this.state = state;
+        this.nav = state.vtdGen.getNav();
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : value(index);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return whether the field has been read, or the view detached, so its value no longer needs the document
+     */
+    public boolean isEvaluated(String field) {
+        int index = indexOf(field);
+        return index >= 0 && values[index] != UNEVALUATED;
+    }
+
+    /**
+     * Maps all entries not read yet, closes the view and returns the complete result.
+     */
+    public Map<String, Object> detach() {
+        Map<String, Object> result = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            result.put(nodes.get(i).entry.field, value(i));
+        }
+        close();
+        return result;
+    }
+
+    /**
+     * Hands the parser state back to the pool. Closing twice has no effect.
+     */
+    @Override
+    public void close() {
+        if (state != null) {
+            parser.release(state);
+            state = null;
+            nav = null;
+        }
+    }
+
+    @Override
+    public Set<String> keySet() {
+        Set<String> fields = new LinkedHashSet<>();
+        for (Node node : nodes) {
+            fields.add(node.entry.field);
+        }
+        return Collections.unmodifiableSet(fields);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < nodes.size();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int i = index++;
+                        return new SimpleImmutableEntry<>(nodes.get(i).entry.field, value(i));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return nodes.size();
+            }
+        };
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodes.get(i).entry.field.equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Object value(int index) {
+        Object value = values[index];
+        if (value == UNEVALUATED) {
+            if (state == null) {
+                throw new IllegalStateException("Field " + nodes.get(index).entry.field + " was not read before the result was closed");
+            }
+            Node node = nodes.get(index);
+            value = parser.plan().evaluateField(nav, state.context, node, state.writer).get(node.entry.field);
+            values[index] = value;
+        }
+        return value;
+    }
+}
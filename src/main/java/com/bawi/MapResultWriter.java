@@ -0,0 +1,83 @@
+package com.bawi;
+
+import com.bawi.ExtractionPlan.Node;
+import com.ximpleware.NavException;
+import com.ximpleware.VTDNav;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the {@code Map<String, Object>} results of {@link VtdXmlParser}: a field maps to null when nothing matched,
+ * to the value itself for a single match and to a list of values otherwise.
+ */
+final class MapResultWriter implements ResultWriter<Map<String, Object>> {
+
+    private final Deque<Map<String, Object>> records = new ArrayDeque<>();
+    private final Deque<List<Object>> values = new ArrayDeque<>();
+
+    @Override
+    public void reset() {
+        records.clear();
+        values.clear();
+    }
+
+    @Override
+    public void begin(RecordSchema schema, Node record) {
+        records.push(new HashMap<>());
+        values.push(new ArrayList<>());
+    }
+
+    @Override
+    public void startField(Node node) {
+        values.peek().clear();
+    }
+
+    @Override
+    public void value(Node node, VTDNav nav, int tokenIdx) throws NavException {
+        values.peek().add(node.valueType.extract(nav, tokenIdx));
+    }
+
+    @Override
+    public void value(Node node, Object value) {
+        values.peek().add(value);
+    }
+
+    @Override
+    public void longValue(Node node, long value) {
+        if (node.fieldType == RecordSchema.FieldType.INT) {
+            values.peek().add((int) value);
+        } else {
+            values.peek().add(value);
+        }
+    }
+
+    @Override
+    public void doubleValue(Node node, double value) {
+        values.peek().add(value);
+    }
+
+    @Override
+    public void endField(Node node) {
+        List<Object> fieldValues = values.peek();
+        Object value;
+        if (fieldValues.size() > 1) {
+            value = fieldValues;
+            values.pop();
+            values.push(new ArrayList<>());
+        } else {
+            value = fieldValues.isEmpty() ? null : fieldValues.get(0);
+        }
+        records.peek().put(node.entry.field, value);
+    }
+
+    @Override
+    public Map<String, Object> end() {
+        values.pop();
+        return records.pop();
+    }
+}
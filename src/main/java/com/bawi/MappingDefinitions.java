@@ -0,0 +1,216 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.parser.CustomFieldParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Loads {@link Entry} mappings from YAML or JSON definition files, so mappings can be added or changed without
+ * recompiling.
+ * <p>
+ * A definition is a list of entries, each with a {@code field}, an {@code xpath} and either {@code children} or an
+ * optional {@code type}: {@code String} (default), {@code Integer}, {@code Long}, {@code Double}, {@code Boolean},
+ * {@code Instant} or the fully qualified name of a {@link CustomFieldParser}:
+ * <pre>
+ * - field: college_id
+ *   xpath: "@id"
+ *   type: Integer
+ * - field: staff
+ *   xpath: staff[1]
+ *   children:
+ *     - { field: id, xpath: "@id", type: Long }
+ * - field: staff_id_attr_sum
+ *   xpath: staff/@id
+ *   type: com.bawi.parser.SumValuesParser
+ * </pre>
+ * JSON definitions use the same structure, since JSON is read as YAML.
+ * <p>
+ * Every loaded mapping is validated by compiling it as the parsers do: unknown keys, missing fields, invalid
+ * xpaths, unsupported types and custom parsers without a no-arg constructor fail at load time with the definition
+ * and entry named, never on the first document. Requires the optional {@code snakeyaml} dependency.
+ */
+public final class MappingDefinitions {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappingDefinitions.class);
+
+    private static final Set<String> KEYS = Set.of("field", "xpath", "type", "children");
+
+    private static final Map<String, Class<?>> VALUE_TYPES = Map.of(
+            "String", String.class,
+            "Integer", Integer.class,
+            "Long", Long.class,
+            "Double", Double.class,
+            "Boolean", Boolean.class,
+            "Instant", Instant.class);
+
+    private MappingDefinitions() {
+    }
+
+    /**
+     * Loads and validates the mapping defined in a {@code .yaml}, {@code .yml} or {@code .json} file.
+     */
+    public static List<Entry> load(Path file) {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(reader, file.toString());
+        } catch (IOException e) {
+            LOGGER.error("Failed to read mapping " + file, e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads and validates a mapping definition.
+     *
+     * @param source name of the definition used in error messages
+     */
+    public static List<Entry> load(Reader reader, String source) {
+        Object definition;
+        try {
+            definition = new Yaml(new SafeConstructor(new LoaderOptions())).load(reader);
+        } catch (YAMLException e) {
+            throw new IllegalArgumentException("Invalid mapping " + source + ": " + e.getMessage(), e);
+        }
+        List<Entry> entries = entries(definition, source, "");
+        try {
+            ExtractionPlan.compile(entries);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid mapping " + source + ": " + e.getMessage(), e);
+        }
+        return entries;
+    }
+
+    /**
+     * Loads every definition file of the directory, keyed by file name without extension. All files are validated
+     * before failing, and every invalid one is reported as a suppressed exception of the one thrown.
+     */
+    public static Map<String, List<Entry>> loadDirectory(Path directory) {
+        Map<String, List<Entry>> mappings = new TreeMap<>();
+        List<IllegalArgumentException> failures = new ArrayList<>();
+        DirectoryStream.Filter<Path> definitions = path -> Files.isRegularFile(path) && extension(path) > 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, definitions)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    mappings.put(name.substring(0, extension(file)), load(file));
+                } catch (IllegalArgumentException e) {
+                    failures.add(e);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to list mappings in " + directory, e);
+            throw new UncheckedIOException(e);
+        }
+        if (!failures.isEmpty()) {
+            IllegalArgumentException failure = new IllegalArgumentException(failures.size() + " invalid mappings in " + directory);
+            failures.forEach(failure::addSuppressed);
+            throw failure;
+        }
+        return mappings;
+    }
+
+    /**
+     * @return index of the extension dot of a definition file, -1 for other files
+     */
+    private static int extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0) {
+            return -1;
+        }
+        String extension = name.substring(dot + 1);
+        return extension.equals("yaml") || extension.equals("yml") || extension.equals("json") ? dot : -1;
+    }
+
+    private static List<Entry> entries(Object definition, String source, String parentPath) {
+        if (!(definition instanceof List)) {
+            throw invalid(source, parentPath.isEmpty() ? "top level" : parentPath, "expected a list of entries");
+        }
+        List<?> items = (List<?>) definition;
+        List<Entry> entries = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            entries.add(entry(items.get(i), source, parentPath, i));
+        }
+        return entries;
+    }
+
+    /**
+     * Errors name the entry by the path of its field, or by its position while the field is unknown.
+     */
+    private static Entry entry(Object item, String source, String parentPath, int index) {
+        String path = parentPath + "[" + index + "]";
+        if (!(item instanceof Map)) {
+            throw invalid(source, path, "expected an entry with field and xpath");
+        }
+        Map<?, ?> entry = (Map<?, ?>) item;
+        for (Object key : entry.keySet()) {
+            if (!(key instanceof String) || !KEYS.contains(key)) {
+                throw invalid(source, path, "unknown key " + key);
+            }
+        }
+        String field = string(entry, "field", source, path);
+        String entryPath = parentPath.isEmpty() ? field : parentPath + "/" + field;
+        String xpath = string(entry, "xpath", source, entryPath);
+        Object type = entry.get("type");
+        if (entry.containsKey("children")) {
+            if (type != null) {
+                throw invalid(source, entryPath, "an entry with children has no type");
+            }
+            List<Entry> children = entries(entry.get("children"), source, entryPath);
+            if (children.isEmpty()) {
+                throw invalid(source, entryPath, "children must not be empty");
+            }
+            return new Entry(field, xpath, children);
+        }
+        if (type == null) {
+            return new Entry(field, xpath);
+        }
+        return new Entry(field, xpath, type(type.toString(), source, entryPath));
+    }
+
+    private static String string(Map<?, ?> entry, String key, String source, String path) {
+        Object value = entry.get(key);
+        if (!(value instanceof String) || ((String) value).isEmpty()) {
+            throw invalid(source, path, "missing " + key);
+        }
+        return (String) value;
+    }
+
+    private static Class<?> type(String name, String source, String path) {
+        Class<?> valueType = VALUE_TYPES.get(name);
+        if (valueType != null) {
+            return valueType;
+        }
+        Class<?> clazz;
+        try {
+            clazz = Class.forName(name, false, MappingDefinitions.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw invalid(source, path, "unknown type " + name);
+        }
+        if (!CustomFieldParser.class.isAssignableFrom(clazz)) {
+            throw invalid(source, path, name + " is neither a value type nor a " + CustomFieldParser.class.getSimpleName());
+        }
+        return clazz;
+    }
+
+    private static IllegalArgumentException invalid(String source, String path, String message) {
+        return new IllegalArgumentException("Invalid mapping " + source + " at " + path + ": " + message);
+    }
+}
@@ -0,0 +1,127 @@
+package com.bawi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable direct memory for the documents of {@link AbstractVtdXmlParser#parseOffHeap(InputStream, OffHeapBufferArena)}.
+ * <p>
+ * A document is read into fixed size direct blocks taken from the arena and tokenized in place by
+ * {@code VTDGenHuge}, so its bytes never reach the heap. Blocks are returned to the arena after the document has
+ * been mapped and reused by the next document, up to a bound of pooled bytes; the rest is left to the garbage
+ * collector. The arena is thread-safe and can be shared by parsers.
+ * <p>
+ * {@link #close()} drops the pooled blocks and rejects further documents. Direct memory cannot be freed explicitly
+ * before Java 22 (the Foreign Memory API is a preview feature in Java 21), so dropped blocks are released once
+ * unreachable, which the pool makes rare. {@code VTDGenHuge} keeps its token and location cache buffers on the heap,
+ * about 8 bytes per token, and allocates them for every document.
+ */
+public final class OffHeapBufferArena implements AutoCloseable {
+
+    private final int blockBits;
+    private final int blockSize;
+    private final int maxPooledBlocks;
+    private final ArrayDeque<ByteBuffer> pooled = new ArrayDeque<>();
+    private long allocatedBlocks;
+    private boolean closed;
+
+    /**
+     * @param blockSize      size of the direct blocks, rounded up to a power of two
+     * @param maxPooledBytes bound of the memory kept for reuse between documents
+     */
+    public OffHeapBufferArena(int blockSize, long maxPooledBytes) {
+        if (blockSize < 1 || blockSize > 1 << 30) {
+            throw new IllegalArgumentException("Block size must be between 1 byte and 1 GB but was " + blockSize);
+        }
+        this.blockBits = 32 - Integer.numberOfLeadingZeros(blockSize - 1);
+        this.blockSize = 1 << blockBits;
+        this.maxPooledBlocks = (int) Math.min(Integer.MAX_VALUE, maxPooledBytes / this.blockSize);
+    }
+
+    /**
+     * Arena of 16 MB blocks keeping up to 256 MB for reuse.
+     */
+    public OffHeapBufferArena() {
+        this(1 << 24, 1L << 28);
+    }
+
+    /**
+     * Reads the stream to its end into blocks of the arena. The buffer must be handed back with
+     * {@link #release(SegmentedXmlBuffer)}.
+     */
+    SegmentedXmlBuffer read(InputStream xml) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(xml);
+        List<ByteBuffer> blocks = new ArrayList<>();
+        long length = 0;
+        try {
+            while (true) {
+                ByteBuffer block = acquire();
+                blocks.add(block);
+                int read = 0;
+                while (block.hasRemaining() && (read = channel.read(block)) >= 0) {
+                    length += read;
+                }
+                if (read < 0) {
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            release(blocks);
+            throw e;
+        }
+        for (ByteBuffer block : blocks) {
+            block.flip();
+        }
+        return new SegmentedXmlBuffer(blocks.toArray(new ByteBuffer[0]), blockBits, length);
+    }
+
+    void release(SegmentedXmlBuffer buffer) {
+        release(List.of(buffer.segments()));
+    }
+
+    /**
+     * @return direct memory allocated by the arena so far, including blocks dropped on release or close
+     */
+    public synchronized long allocatedBytes() {
+        return allocatedBlocks * blockSize;
+    }
+
+    /**
+     * @return direct memory currently kept for reuse
+     */
+    public synchronized long pooledBytes() {
+        return (long) pooled.size() * blockSize;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        pooled.clear();
+    }
+
+    private synchronized ByteBuffer acquire() {
+        if (closed) {
+            throw new IllegalStateException("Off-heap arena is closed");
+        }
+        ByteBuffer block = pooled.poll();
+        if (block == null) {
+            allocatedBlocks++;
+            return ByteBuffer.allocateDirect(blockSize);
+        }
+        return block;
+    }
+
+    private synchronized void release(List<ByteBuffer> blocks) {
+        for (ByteBuffer block : blocks) {
+            if (!closed && pooled.size() < maxPooledBlocks) {
+                pooled.push(block.clear());
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.bawi;
+
+import com.bawi.ExtractionPlan.Node;
+import com.bawi.ParserStatePool.HugeState;
+import com.bawi.ParserStatePool.ParserState;
+import com.ximpleware.NavException;
+import com.ximpleware.VTDNav;
+import com.ximpleware.extended.VTDNavHuge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates the repeated records of one document on a {@link ForkJoinPool}.
+ * <p>
+ * The matched records are split into ranges recursively. Each leaf range works on its own cloned navigator and
+ * borrows the precompiled evaluation state (context and {@link ResultWriter}) from the parser's pool, so tasks share
+ * nothing but the immutable VTD buffers of the document. Results are stored by match position and therefore come
+ * back in document order.
+ */
+final class ParallelRecords<R> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelRecords.class);
+
+    /** Records per leaf task are chosen so that every pool thread gets about this many tasks to balance load. */
+    private static final int TASKS_PER_THREAD = 4;
+
+    /** Huge document matches cloned per pool thread before they are evaluated. */
+    private static final int HUGE_WINDOW_PER_THREAD = 256;
+
+    /**
+     * {@link VTDNavHuge#cloneNav()} of vtd-xml 2.13 copies one context entry too few and loses the current element,
+     * see {@link #cloneNav(VTDNavHuge)}.
+     */
+    private static final Field HUGE_CONTEXT;
+
+    static {
+        try {
+            HUGE_CONTEXT = VTDNavHuge.class.getDeclaredField("context");
+            HUGE_CONTEXT.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ExtractionPlan plan;
+    private final ForkJoinPool pool;
+    private final ParserStatePool<R> states;
+
+    ParallelRecords(ExtractionPlan plan, ForkJoinPool pool, ParserStatePool<R> states) {
+        this.plan = plan;
+        this.pool = pool;
+        this.states = states;
+    }
+
+    int hugeWindow() {
+        return pool.getParallelism() * HUGE_WINDOW_PER_THREAD;
+    }
+
+    /**
+     * Like the serial evaluation, a record that cannot be navigated to is logged and ends the entry: only the
+     * records before the first failing one are returned.
+     *
+     * @param elements element indexes of the records in document order
+     */
+    List<R> evaluate(VTDNav nav, Node record, int[] elements) {
+        @SuppressWarnings("unchecked")
+        R[] results = (R[]) new Object[elements.length];
+        AtomicInteger firstFailed = new AtomicInteger(elements.length);
+        NavException[] failures = new NavException[elements.length];
+        pool.invoke(new RecordTask((from, to) -> {
+            ParserState<R> state = states.acquire();
+            VTDNav taskNav = nav.cloneNav();
+            int i = from;
+            try {
+                for (; i < to && i < firstFailed.get(); i++) {
+                    taskNav.recoverNode(elements[i]);
+                    results[i] = plan.evaluateRecord(taskNav, state.context, record, state.writer);
+                }
+            } catch (NavException e) {
+                failures[i] = e;
+                int failed = i;
+                firstFailed.accumulateAndGet(failed, Math::min);
+            } finally {
+                states.release(state);
+            }
+        }, 0, elements.length, grain(elements.length)));
+        int failed = firstFailed.get();
+        if (failed < elements.length) {
+            LOGGER.error("Failed to process record for entry " + record.entry, failures[failed]);
+            plan.entryFailed(record, failures[failed]);
+            return Arrays.asList(results).subList(0, failed);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * @param navs navigators positioned on the records, in document order
+     */
+    List<R> evaluate(List<VTDNavHuge> navs, Node record) {
+        if (navs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        @SuppressWarnings("unchecked")
+        R[] results = (R[]) new Object[navs.size()];
+        pool.invoke(new RecordTask((from, to) -> {
+            HugeState<R> state = states.acquireHuge();
+            try {
+                for (int i = from; i < to; i++) {
+                    results[i] = plan.evaluateRecord(navs.get(i), state.context, record, state.writer);
+                }
+            } finally {
+                states.releaseHuge(state);
+            }
+        }, 0, navs.size(), grain(navs.size())));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Clones the navigator including its current element.
+     */
+    static VTDNavHuge cloneNav(VTDNavHuge nav) {
+        VTDNavHuge clone = nav.cloneNav();
+        try {
+            int[] context = (int[]) HUGE_CONTEXT.get(nav);
+            int depth = context[0];
+            if (depth > 0) {
+                ((int[]) HUGE_CONTEXT.get(clone))[depth] = context[depth];
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return clone;
+    }
+
+    private int grain(int count) {
+        return Math.max(1, count / (pool.getParallelism() * TASKS_PER_THREAD));
+    }
+
+    private interface RangeEvaluator {
+        void evaluate(int from, int to);
+    }
+
+    /**
+     * Splits {@code [from, to)} in halves down to the grain size and evaluates the leaf ranges.
+     */
+    private static final class RecordTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient RangeEvaluator evaluator;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        RecordTask(RangeEvaluator evaluator, int from, int to, int grain) {
+            this.evaluator = evaluator;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                evaluator.evaluate(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RecordTask(evaluator, from, middle, grain), new RecordTask(evaluator, middle, to, grain));
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.bawi;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parses many small documents with tokenizing ({@code VTDGen.parse}) and mapping as two pipelined stages, created
+ * by {@link AbstractVtdXmlParser#pipeline(Executor, Executor, int)}.
+ * <p>
+ * Every document borrows a pooled parser state in the tokenizing stage and hands it back after the mapping stage,
+ * so {@code VTDGen} token buffers, precompiled contexts and result writers are reused across documents. At most
+ * {@code maxInFlight} documents are read ahead of the consumer, which bounds memory and the number of borrowed
+ * states, and results are always delivered in input order.
+ * <p>
+ * A pipeline is stateless and can run any number of batches concurrently.
+ */
+public final class ParsePipeline<R> {
+
+    private final AbstractVtdXmlParser<R> parser;
+    private final Executor tokenizer;
+    private final Executor mapper;
+    private final int maxInFlight;
+
+    ParsePipeline(AbstractVtdXmlParser<R> parser, Executor tokenizer, Executor mapper, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one document must be in flight but was " + maxInFlight);
+        }
+        this.parser = parser;
+        this.tokenizer = tokenizer;
+        this.mapper = mapper;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Streams the results of the documents in order. Documents are pulled from the iterable only as results are
+     * consumed, keeping {@code maxInFlight} documents in progress. A document that fails to parse fails the stream
+     * at its position. The caller must not modify a document array until its result has been returned.
+     */
+    public Stream<R> parseAll(Iterable<byte[]> documents) {
+        Iterator<byte[]> input = documents.iterator();
+        Iterator<R> results = new Iterator<>() {
+            private final ArrayDeque<CompletableFuture<R>> pending = new ArrayDeque<>();
+
+            @Override
+            public boolean hasNext() {
+                fill();
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public R next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                CompletableFuture<R> result = pending.poll();
+                fill();
+                return join(result);
+            }
+
+            private void fill() {
+                while (pending.size() < maxInFlight && input.hasNext()) {
+                    pending.add(submit(input.next()));
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Adapts a publisher of documents to a publisher of their results in the same order.
+     * <p>
+     * Each subscriber gets its own subscription to {@code documents}. Documents are requested only for outstanding
+     * subscriber demand and at most {@code maxInFlight} are in progress, so a slow subscriber slows down the source
+     * without blocking any executor thread. Results are delivered on the thread that completes a document or
+     * requests more, one signal at a time. A failing document cancels the source and completes the subscriber
+     * exceptionally.
+     */
+    public Flow.Publisher<R> publisher(Flow.Publisher<byte[]> documents) {
+        return subscriber -> {
+            PipelineSubscription subscription = new PipelineSubscription(subscriber);
+            subscriber.onSubscribe(subscription);
+            documents.subscribe(subscription);
+        };
+    }
+
+    private CompletableFuture<R> submit(byte[] xml) {
+        return CompletableFuture.supplyAsync(() -> parser.tokenize(xml, 0, xml.length), tokenizer)
+                .thenApplyAsync(parser::map, mapper);
+    }
+
+    private static <R> R join(CompletableFuture<R> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Subscription to the results and subscriber of the documents. {@link #drain()} runs on whichever thread completes
+     * a document, requests results or signals the input, serialized by a work-in-progress counter; it delivers the
+     * completed results at the head of the queue while there is demand and then requests as many documents as the
+     * remaining demand and {@code maxInFlight} allow.
+     */
+    private final class PipelineSubscription implements Flow.Subscription, Flow.Subscriber<byte[]> {
+        private final Flow.Subscriber<? super R> results;
+        private final ConcurrentLinkedQueue<CompletableFuture<R>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger drains = new AtomicInteger();
+        private final AtomicLong demand = new AtomicLong();
+        private volatile Flow.Subscription documents;
+        private volatile boolean completed;
+        private volatile boolean cancelled;
+        private volatile Throwable failure;
+        /** Documents requested from the source and not yet delivered as results, only accessed by the drain. */
+        private int inFlight;
+        private boolean done;
+
+        PipelineSubscription(Flow.Subscriber<? super R> results) {
+            this.results = results;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failure = new IllegalArgumentException("Requested " + n + " results, must be positive");
+                cancelled = true;
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            documents = subscription;
+            drain();
+        }
+
+        @Override
+        public void onNext(byte[] xml) {
+            CompletableFuture<R> result = submit(xml);
+            pending.add(result);
+            result.whenComplete((value, e) -> drain());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            failure = throwable;
+            completed = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            drain();
+        }
+
+        private void drain() {
+            if (drains.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                if (!done && cancelled) {
+                    finish(failure);
+                }
+                CompletableFuture<R> head;
+                while (!done && demand.get() > 0 && (head = pending.peek()) != null && head.isDone()) {
+                    pending.poll();
+                    R value;
+                    try {
+                        value = head.join();
+                    } catch (CompletionException e) {
+                        finish(e.getCause());
+                        break;
+                    }
+                    inFlight--;
+                    demand.decrementAndGet();
+                    results.onNext(value);
+                    if (cancelled) {
+                        finish(failure);
+                    }
+                }
+                if (!done && completed && pending.isEmpty()) {
+                    done = true;
+                    if (failure != null) {
+                        results.onError(failure);
+                    } else {
+                        results.onComplete();
+                    }
+                }
+                Flow.Subscription source = documents;
+                if (!done && !completed && source != null) {
+                    long wanted = Math.min(maxInFlight, demand.get()) - inFlight;
+                    if (wanted > 0) {
+                        inFlight += (int) wanted;
+                        source.request(wanted);
+                    }
+                }
+            } while (drains.decrementAndGet() != 0);
+        }
+
+        /**
+         * Cancels the source and signals the cause to the subscriber unless it cancelled.
+         */
+        private void finish(Throwable cause) {
+            done = true;
+            Flow.Subscription source = documents;
+            if (source != null) {
+                source.cancel();
+            }
+            pending.clear();
+            if (cause != null) {
+                results.onError(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.bawi;
+
+import com.ximpleware.VTDGen;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free pool of per-parse state ({@link VTDGen}, precompiled {@link ExtractionPlan.Context}, {@link ResultWriter}
+ * and read buffer).
+ * <p>
+ * A state is borrowed for the duration of one parse and handed back afterwards, so the same pooled state is reused
+ * by whichever platform or virtual thread comes next. Unlike a {@link ThreadLocal} this keeps the number of
+ * {@link VTDGen}s bounded by the number of concurrent parses rather than by the number of threads ever seen.
+ * <p>
+ * Documents tokenized by {@code VTDGenHuge} borrow a {@link HugeState} instead, whose {@code VTDGenHuge} is created
+ * per document because it cannot be reset. Both kinds are kept idle up to the same bound.
+ */
+final class ParserStatePool<R> {
+
+    /** Read buffers above this size are not kept in the pool to avoid pinning large arrays. */
+    static final int MAX_REUSED_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Can be extended with per-document state of its own, dropped by overriding {@link #clear()}, see
+     * {@link #of(Supplier, int)}.
+     */
+    static class ParserState<R> {
+        VTDGen vtdGen = new VTDGen();
+        final ExtractionPlan.Context context;
+        final ResultWriter<R> writer;
+        private byte[] buffer = new byte[0];
+        private byte[] filterBuffer = new byte[0];
+        private int documentLength;
+
+        ParserState(ExtractionPlan.Context context, ResultWriter<R> writer) {
+            this.context = context;
+            this.writer = writer;
+        }
+
+        /**
+         * Sets the document to tokenize next, reusing the token buffers of the previous one.
+         */
+        void setDoc(byte[] xml, int offset, int length) {
+            vtdGen.setDoc_BR(xml, offset, length);
+            documentLength = length;
+        }
+
+        /**
+         * Drops the references to the last document, from the {@link VTDGen} and from the pilots of the context, so
+         * an idle state does not pin it. The token buffers are kept for the next document unless they were grown by a
+         * document above {@link #MAX_REUSED_BUFFER_SIZE}.
+         */
+        void clear() {
+            context.unbind();
+            if (documentLength > MAX_REUSED_BUFFER_SIZE) {
+                vtdGen = new VTDGen();
+            } else {
+                vtdGen.clear();
+            }
+            documentLength = 0;
+        }
+
+        /**
+         * Returns a buffer of at least {@code size} bytes, reusing the pooled one when the size allows it.
+         */
+        byte[] buffer(int size) {
+            if (size > MAX_REUSED_BUFFER_SIZE) {
+                return new byte[size];
+            }
+            if (buffer.length < size) {
+                buffer = grow(buffer, size);
+            }
+            return buffer;
+        }
+
+        /**
+         * Returns a second buffer for the output of {@link SubtreeFilter}, whose input may be {@link #buffer(int)}.
+         */
+        byte[] filterBuffer(int size) {
+            if (size > MAX_REUSED_BUFFER_SIZE) {
+                return new byte[size];
+            }
+            if (filterBuffer.length < size) {
+                filterBuffer = grow(filterBuffer, size);
+            }
+            return filterBuffer;
+        }
+
+        private static byte[] grow(byte[] buffer, int size) {
+            return new byte[Math.max(size, Math.min(buffer.length * 2, MAX_REUSED_BUFFER_SIZE))];
+        }
+    }
+
+    static final class HugeState<R> {
+        final ExtractionPlan.HugeContext context;
+        final ResultWriter<R> writer;
+
+        private HugeState(ExtractionPlan.HugeContext context, ResultWriter<R> writer) {
+            this.context = context;
+            this.writer = writer;
+        }
+    }
+
+    private final Supplier<? extends ParserState<R>> stateFactory;
+    private final Supplier<HugeState<R>> hugeStateFactory;
+    private final int maxIdle;
+    private final ConcurrentLinkedQueue<ParserState<R>> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final ConcurrentLinkedQueue<HugeState<R>> idleHuge = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleHugeCount = new AtomicInteger();
+
+    ParserStatePool(ExtractionPlan plan, Supplier<? extends ResultWriter<R>> writerFactory, int maxIdle) {
+        this(() -> new ParserState<>(plan.newContext(), writerFactory.get()),
+                () -> new HugeState<>(plan.newHugeContext(), writerFactory.get()), maxIdle);
+    }
+
+    private ParserStatePool(Supplier<? extends ParserState<R>> stateFactory, Supplier<HugeState<R>> hugeStateFactory, int maxIdle) {
+        this.stateFactory = stateFactory;
+        this.hugeStateFactory = hugeStateFactory;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Pools the states created by {@code stateFactory}, e.g. subclasses of {@link ParserState} with state of their
+     * own. The pool has no {@link HugeState}s.
+     */
+    static <R> ParserStatePool<R> of(Supplier<? extends ParserState<R>> stateFactory, int maxIdle) {
+        return new ParserStatePool<>(stateFactory, () -> {
+            throw new UnsupportedOperationException("Pool of custom states has no huge states");
+        }, maxIdle);
+    }
+
+    ParserState<R> acquire() {
+        ParserState<R> state = idle.poll();
+        if (state == null) {
+            return stateFactory.get();
+        }
+        idleCount.decrementAndGet();
+        return state;
+    }
+
+    void release(ParserState<R> state) {
+        state.clear();
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(state);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    HugeState<R> acquireHuge() {
+        HugeState<R> state = idleHuge.poll();
+        if (state == null) {
+            return hugeStateFactory.get();
+        }
+        idleHugeCount.decrementAndGet();
+        return state;
+    }
+
+    void releaseHuge(HugeState<R> state) {
+        state.context.unbind();
+        if (idleHugeCount.incrementAndGet() <= maxIdle) {
+            idleHuge.offer(state);
+        } else {
+            idleHugeCount.decrementAndGet();
+        }
+    }
+}
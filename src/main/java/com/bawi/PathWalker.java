@@ -0,0 +1,256 @@
+package com.bawi;
+
+import com.bawi.ExtractionPlan.Context;
+import com.bawi.ExtractionPlan.Node;
+import com.ximpleware.NavException;
+import com.ximpleware.VTDNav;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the matches of all simple relative paths of one mapping level in a single forward walk over the context
+ * element with {@link VTDNav} cursor moves.
+ * <p>
+ * A simple path is a sequence of child element names, each optionally selecting one position among its same-named
+ * siblings, optionally ending with an attribute, e.g. {@code @id}, {@code description}, {@code salary/basic},
+ * {@code staff[1]/@dep_name} or {@code address/country/@code}. The paths of sibling entries, custom parsers
+ * included, are merged into a trie of {@link Step}s, so every child element of the context is visited once however
+ * many entries read below it, instead of once per entry with a separate {@code AutoPilot} evaluation. A child
+ * element is dispatched both to the step of its name and to the step of its position, so {@code staff/@id} and
+ * {@code staff[1]/@dep_name} share the walk over {@code staff}. Matches are collected per node slot in document
+ * order, i.e. in the order {@code AutoPilot} would return them: attribute value tokens, first text tokens of
+ * elements and element indexes of records. Everything else (other predicates, axes, wildcards and functions) is
+ * left to {@code AutoPilot}.
+ * <p>
+ * Absolute paths ({@code /college/staff/@id}, {@code //employee}) are not walked either. The walk only visits the
+ * subtree of the element the mapping level is evaluated on, while an absolute path starts from the document root
+ * whatever that element is, so it is evaluated by its own {@code AutoPilot}. Write top level paths relative to the
+ * root element to have them walked.
+ */
+final class PathWalker {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_.-]*");
+
+    /** Element step with an optional position predicate. */
+    private static final Pattern ELEMENT_STEP = Pattern.compile("(" + NAME.pattern() + ")(?:\\[([1-9][0-9]{0,5})\\])?");
+
+    /** Above this number of child names a step looks children up by name instead of matching each name in turn. */
+    private static final int LINEAR_MATCH_LIMIT = 8;
+
+    private static final class Step {
+        final String name;
+        final List<String> attributeNames = new ArrayList<>();
+        final List<Integer> attributeSlots = new ArrayList<>();
+        final List<Integer> textSlots = new ArrayList<>();
+        final List<Integer> elementSlots = new ArrayList<>();
+        /** Child steps by name, the step matching any position first and then those of single positions. */
+        final Map<String, Map<Integer, Step>> children = new LinkedHashMap<>();
+
+        private Step(String name) {
+            this.name = name;
+        }
+
+        Step child(String name, int position) {
+            return children.computeIfAbsent(name, key -> new TreeMap<>()).computeIfAbsent(position, key -> new Step(name));
+        }
+    }
+
+    private static final class CompiledStep {
+        final String[] attributeNames;
+        final int[] attributeSlots;
+        final int[] textSlots;
+        final int[] elementSlots;
+        final ChildSteps[] children;
+        final Map<String, ChildSteps> childrenByName;
+        final boolean positional;
+
+        private CompiledStep(Step step) {
+            this.attributeNames = step.attributeNames.toArray(new String[0]);
+            this.attributeSlots = toArray(step.attributeSlots);
+            this.textSlots = toArray(step.textSlots);
+            this.elementSlots = toArray(step.elementSlots);
+            this.children = new ChildSteps[step.children.size()];
+            int i = 0;
+            boolean positional = false;
+            for (Map.Entry<String, Map<Integer, Step>> child : step.children.entrySet()) {
+                children[i] = new ChildSteps(child.getKey(), i, child.getValue());
+                positional |= children[i].positions.length > 0;
+                i++;
+            }
+            this.positional = positional;
+            if (children.length > LINEAR_MATCH_LIMIT) {
+                childrenByName = new HashMap<>();
+                for (ChildSteps child : children) {
+                    childrenByName.put(child.name, child);
+                }
+            } else {
+                childrenByName = null;
+            }
+        }
+    }
+
+    /**
+     * The steps of one child element name: the one matching every position, if any, and those of single positions.
+     */
+    private static final class ChildSteps {
+        final String name;
+        final int index;
+        final CompiledStep any;
+        /** Indexed by position - 1, null for positions no path selects. */
+        final CompiledStep[] positions;
+
+        private ChildSteps(String name, int index, Map<Integer, Step> steps) {
+            this.name = name;
+            this.index = index;
+            Step any = steps.get(0);
+            this.any = any == null ? null : new CompiledStep(any);
+            int maxPosition = 0;
+            for (int position : steps.keySet()) {
+                maxPosition = Math.max(maxPosition, position);
+            }
+            this.positions = new CompiledStep[maxPosition];
+            for (Map.Entry<Integer, Step> step : steps.entrySet()) {
+                if (step.getKey() > 0) {
+                    positions[step.getKey() - 1] = new CompiledStep(step.getValue());
+                }
+            }
+        }
+    }
+
+    private final CompiledStep root;
+    private final int[] slots;
+
+    private PathWalker(CompiledStep root, int[] slots) {
+        this.root = root;
+        this.slots = slots;
+    }
+
+    /**
+     * @return the element steps of a simple path followed by the attribute name or null for the text, or null when
+     * the xpath is not a simple path
+     */
+    static String[] simplePath(String xpath) {
+        String[] steps = xpath.split("/", -1);
+        for (int i = 0; i < steps.length; i++) {
+            String step = steps[i];
+            if (i == steps.length - 1 && step.startsWith("@")) {
+                if (!NAME.matcher(step.substring(1)).matches()) {
+                    return null;
+                }
+            } else if (!ELEMENT_STEP.matcher(step).matches()) {
+                return null;
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * @return a walker for the walkable nodes of one mapping level, null when none of them is walkable
+     */
+    static PathWalker of(List<Node> nodes) {
+        Step root = new Step(null);
+        List<Integer> slots = new ArrayList<>();
+        for (Node node : nodes) {
+            if (!node.walkable || node.childElement != null) {
+                continue; // child records are visited by sibling moves
+            }
+            String[] steps = simplePath(node.entry.xpath);
+            Step step = root;
+            boolean attribute = steps[steps.length - 1].startsWith("@");
+            int elementSteps = attribute ? steps.length - 1 : steps.length;
+            for (int i = 0; i < elementSteps; i++) {
+                Matcher matcher = ELEMENT_STEP.matcher(steps[i]);
+                matcher.matches();
+                step = step.child(matcher.group(1), matcher.group(2) == null ? 0 : Integer.parseInt(matcher.group(2)));
+            }
+            if (attribute) {
+                step.attributeNames.add(steps[steps.length - 1].substring(1));
+                step.attributeSlots.add(node.slot);
+            } else if (node.kind == ExtractionPlan.Kind.RECORD) {
+                step.elementSlots.add(node.slot);
+            } else {
+                step.textSlots.add(node.slot);
+            }
+            slots.add(node.slot);
+        }
+        return slots.isEmpty() ? null : new PathWalker(new CompiledStep(root), toArray(slots));
+    }
+
+    /**
+     * Collects the matches of all walkable nodes below the current element into the context. The cursor is back on
+     * the same element when this method returns normally.
+     */
+    void collect(VTDNav nav, Context context) throws NavException {
+        for (int slot : slots) {
+            context.clearMatches(slot);
+        }
+        visit(root, nav, context);
+    }
+
+    private static void visit(CompiledStep step, VTDNav nav, Context context) throws NavException {
+        for (int i = 0; i < step.attributeSlots.length; i++) {
+            int valueIdx = nav.getAttrVal(step.attributeNames[i]);
+            if (valueIdx != -1) {
+                context.addMatch(step.attributeSlots[i], valueIdx);
+            }
+        }
+        if (step.textSlots.length > 0) {
+            int textTokenIdx = nav.getText();
+            if (textTokenIdx != -1) {
+                for (int slot : step.textSlots) {
+                    context.addMatch(slot, textTokenIdx);
+                }
+            }
+        }
+        for (int slot : step.elementSlots) {
+            context.addMatch(slot, nav.getCurrentIndex());
+        }
+        if (step.children.length == 0 || !nav.toElement(VTDNav.FIRST_CHILD)) {
+            return;
+        }
+        int[] positions = step.positional ? new int[step.children.length] : null;
+        do {
+            ChildSteps child = match(step, nav);
+            if (child == null) {
+                continue;
+            }
+            if (child.any != null) {
+                visit(child.any, nav, context);
+            }
+            if (child.positions.length > 0) {
+                int position = ++positions[child.index];
+                if (position <= child.positions.length && child.positions[position - 1] != null) {
+                    visit(child.positions[position - 1], nav, context);
+                }
+            }
+        } while (nav.toElement(VTDNav.NEXT_SIBLING));
+        nav.toElement(VTDNav.PARENT);
+    }
+
+    private static ChildSteps match(CompiledStep step, VTDNav nav) throws NavException {
+        if (step.childrenByName != null) {
+            return step.childrenByName.get(nav.toRawString(nav.getCurrentIndex()));
+        }
+        for (ChildSteps child : step.children) {
+            if (nav.matchElement(child.name)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
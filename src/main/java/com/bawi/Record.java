@@ -0,0 +1,292 @@
+package com.bawi;
+
+import com.bawi.RecordSchema.FieldType;
+import com.bawi.RecordSchema.Storage;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact, schema-indexed result of one mapping level, produced by {@link VtdXmlRecordParser}.
+ * <p>
+ * Values of a field are stored contiguously in the primitive or object column chosen by its {@link FieldType}, so
+ * numeric values are never boxed and repeated values or nested records need no per-value list. A field matched
+ * several times has {@link #size(int)} values accessed with the {@code (field, i)} getters. A getter not matching
+ * the field's type (e.g. {@link #getLong(int)} of a {@link FieldType#STRING} field) throws
+ * {@link ClassCastException}; integral fields can also be read with {@link #getDouble(int)}.
+ * <p>
+ * Records are immutable.
+ */
+public final class Record {
+
+    private final RecordSchema schema;
+    private final int[] starts;
+    private final int[] counts;
+    private final long[] longs;
+    private final double[] doubles;
+    private final Object[] objects;
+
+    Record(RecordSchema schema, int[] starts, int[] counts, long[] longs, double[] doubles, Object[] objects) {
+        this.schema = schema;
+        this.starts = starts;
+        this.counts = counts;
+        this.longs = longs;
+        this.doubles = doubles;
+        this.objects = objects;
+    }
+
+    public RecordSchema schema() {
+        return schema;
+    }
+
+    /**
+     * @return number of values of the field, 0 when the mapping did not match
+     */
+    public int size(int field) {
+        return counts[field];
+    }
+
+    public boolean isNull(int field) {
+        return counts[field] == 0;
+    }
+
+    public long getLong(int field) {
+        return getLong(field, 0);
+    }
+
+    public long getLong(int field, int i) {
+        if (schema.type(field).storage != Storage.LONG) {
+            throw wrongType(field, "long");
+        }
+        return longs[position(field, i)];
+    }
+
+    public int getInt(int field) {
+        return (int) getLong(field, 0);
+    }
+
+    public int getInt(int field, int i) {
+        return (int) getLong(field, i);
+    }
+
+    public boolean getBoolean(int field) {
+        return getLong(field, 0) != 0;
+    }
+
+    public boolean getBoolean(int field, int i) {
+        return getLong(field, i) != 0;
+    }
+
+    public double getDouble(int field) {
+        return getDouble(field, 0);
+    }
+
+    public double getDouble(int field, int i) {
+        FieldType type = schema.type(field);
+        if (type == FieldType.DOUBLE) {
+            return doubles[position(field, i)];
+        }
+        if (type.storage != Storage.LONG) {
+            throw wrongType(field, "double");
+        }
+        return longs[position(field, i)];
+    }
+
+    public String getString(int field) {
+        return getString(field, 0);
+    }
+
+    public String getString(int field, int i) {
+        FieldType type = schema.type(field);
+        if (type != FieldType.STRING && type != FieldType.CUSTOM) {
+            throw wrongType(field, "String");
+        }
+        Object value = objects[position(field, i)];
+        if (!(value instanceof String)) {
+            throw wrongType(field, "String");
+        }
+        return (String) value;
+    }
+
+    public Record getRecord(int field) {
+        return getRecord(field, 0);
+    }
+
+    public Record getRecord(int field, int i) {
+        if (schema.type(field) != FieldType.RECORD) {
+            throw wrongType(field, "Record");
+        }
+        return (Record) objects[position(field, i)];
+    }
+
+    /**
+     * Boxed value with the same shape as the {@link VtdXmlParser} map: null, a single value or a list of values.
+     */
+    public Object get(int field) {
+        int count = counts[field];
+        if (count == 0) {
+            return null;
+        }
+        if (count == 1) {
+            return boxed(field, 0);
+        }
+        List<Object> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(boxed(field, i));
+        }
+        return values;
+    }
+
+    public Object get(String field) {
+        int index = schema.indexOf(field);
+        return index < 0 ? null : get(index);
+    }
+
+    /**
+     * Converts the record, including nested records, to the map produced by {@link VtdXmlParser}.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        for (int field = 0; field < schema.size(); field++) {
+            Object value = get(field);
+            if (value instanceof Record) {
+                value = ((Record) value).toMap();
+            } else if (value instanceof List && schema.type(field) == FieldType.RECORD) {
+                List<Object> maps = new ArrayList<>();
+                for (Object record : (List<?>) value) {
+                    maps.add(((Record) record).toMap());
+                }
+                value = maps;
+            }
+            map.put(schema.name(field), value);
+        }
+        return map;
+    }
+
+    private Object boxed(int field, int i) {
+        switch (schema.type(field)) {
+            case INT:
+                return getInt(field, i);
+            case LONG:
+                return getLong(field, i);
+            case BOOLEAN:
+                return getBoolean(field, i);
+            case INSTANT:
+                return Instant.ofEpochMilli(getLong(field, i));
+            case DOUBLE:
+                return getDouble(field, i);
+            default:
+                return objects[position(field, i)];
+        }
+    }
+
+    private ClassCastException wrongType(int field, String accessed) {
+        return new ClassCastException("Field " + schema.name(field) + " of type " + schema.type(field)
+                + " cannot be read as " + accessed);
+    }
+
+    private int position(int field, int i) {
+        if (i < 0 || i >= counts[field]) {
+            throw new NoSuchElementException("No value " + i + " for field " + schema.name(field));
+        }
+        return starts[field] + i;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Record that = (Record) o;
+        return schema.equals(that.schema) && toMap().equals(that.toMap());
+    }
+
+    @Override
+    public int hashCode() {
+        return toMap().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Record" + toMap();
+    }
+
+    static final class Builder {
+        private RecordSchema schema;
+        private int[] starts = new int[0];
+        private int[] counts = new int[0];
+        private long[] longs = new long[16];
+        private int longSize;
+        private double[] doubles = new double[16];
+        private int doubleSize;
+        private Object[] objects = new Object[16];
+        private int objectSize;
+
+        void reset(RecordSchema schema) {
+            this.schema = schema;
+            int size = schema.size();
+            if (starts.length < size) {
+                starts = new int[size];
+                counts = new int[size];
+            } else {
+                Arrays.fill(counts, 0, size, 0);
+            }
+            longSize = doubleSize = 0;
+            Arrays.fill(objects, 0, objectSize, null);
+            objectSize = 0;
+        }
+
+        void startField(int field) {
+            switch (schema.type(field).storage) {
+                case LONG:
+                    starts[field] = longSize;
+                    break;
+                case DOUBLE:
+                    starts[field] = doubleSize;
+                    break;
+                default:
+                    starts[field] = objectSize;
+            }
+        }
+
+        void addLong(int field, long value) {
+            if (longSize == longs.length) {
+                longs = Arrays.copyOf(longs, longSize * 2);
+            }
+            longs[longSize++] = value;
+            counts[field]++;
+        }
+
+        void addDouble(int field, double value) {
+            if (doubleSize == doubles.length) {
+                doubles = Arrays.copyOf(doubles, doubleSize * 2);
+            }
+            doubles[doubleSize++] = value;
+            counts[field]++;
+        }
+
+        void addObject(int field, Object value) {
+            if (objectSize == objects.length) {
+                objects = Arrays.copyOf(objects, objectSize * 2);
+            }
+            objects[objectSize++] = value;
+            counts[field]++;
+        }
+
+        Record build() {
+            int size = schema.size();
+            return new Record(schema, Arrays.copyOf(starts, size), Arrays.copyOf(counts, size),
+                    longSize == 0 ? EMPTY_LONGS : Arrays.copyOf(longs, longSize),
+                    doubleSize == 0 ? EMPTY_DOUBLES : Arrays.copyOf(doubles, doubleSize),
+                    objectSize == 0 ? EMPTY_OBJECTS : Arrays.copyOf(objects, objectSize));
+        }
+    }
+
+    private static final long[] EMPTY_LONGS = new long[0];
+    private static final double[] EMPTY_DOUBLES = new double[0];
+    private static final Object[] EMPTY_OBJECTS = new Object[0];
+}
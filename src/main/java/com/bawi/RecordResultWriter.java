@@ -0,0 +1,90 @@
+package com.bawi;
+
+import com.bawi.ExtractionPlan.Node;
+import com.ximpleware.NavException;
+import com.ximpleware.VTDNav;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds {@link Record}s, writing integral and double values straight into primitive columns.
+ * <p>
+ * One {@link Record.Builder} is kept per nesting depth and reused for every record and document, so the only
+ * allocations per record are its final, exactly sized column arrays.
+ */
+final class RecordResultWriter implements ResultWriter<Record> {
+
+    private final List<Record.Builder> builders = new ArrayList<>();
+    private int depth = -1;
+
+    @Override
+    public void reset() {
+        depth = -1;
+    }
+
+    @Override
+    public void begin(RecordSchema schema, Node record) {
+        depth++;
+        if (depth == builders.size()) {
+            builders.add(new Record.Builder());
+        }
+        builders.get(depth).reset(schema);
+    }
+
+    @Override
+    public void startField(Node node) {
+        builders.get(depth).startField(node.index);
+    }
+
+    @Override
+    public void value(Node node, VTDNav nav, int tokenIdx) throws NavException {
+        Record.Builder builder = builders.get(depth);
+        switch (node.fieldType.storage) {
+            case LONG:
+                builder.addLong(node.index, node.valueType.extractLong(nav, tokenIdx));
+                break;
+            case DOUBLE:
+                builder.addDouble(node.index, node.valueType.extractDouble(nav, tokenIdx));
+                break;
+            default:
+                builder.addObject(node.index, node.valueType.extract(nav, tokenIdx));
+        }
+    }
+
+    @Override
+    public void value(Node node, Object value) {
+        Record.Builder builder = builders.get(depth);
+        switch (node.fieldType.storage) {
+            case LONG:
+                builder.addLong(node.index, value instanceof Boolean ? ((Boolean) value ? 1 : 0)
+                        : value instanceof Instant ? ((Instant) value).toEpochMilli() : ((Number) value).longValue());
+                break;
+            case DOUBLE:
+                builder.addDouble(node.index, ((Number) value).doubleValue());
+                break;
+            default:
+                builder.addObject(node.index, value);
+        }
+    }
+
+    @Override
+    public void longValue(Node node, long value) {
+        builders.get(depth).addLong(node.index, value);
+    }
+
+    @Override
+    public void doubleValue(Node node, double value) {
+        builders.get(depth).addDouble(node.index, value);
+    }
+
+    @Override
+    public void endField(Node node) {
+    }
+
+    @Override
+    public Record end() {
+        return builders.get(depth--).build();
+    }
+}
@@ -0,0 +1,128 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Layout of a {@link Record} derived from one level of an {@link Entry} mapping tree.
+ * <p>
+ * Fields are numbered in mapping order, so hot code can resolve {@link #indexOf(String)} once and then access
+ * record values by index. Each field is stored in one of three columns: integral types (int, long, boolean and
+ * epoch-millis instants) in a {@code long[]}, doubles in a {@code double[]} and everything else in an
+ * {@code Object[]}.
+ */
+public final class RecordSchema {
+
+    public enum FieldType {
+        STRING(Storage.OBJECT),
+        INT(Storage.LONG),
+        LONG(Storage.LONG),
+        DOUBLE(Storage.DOUBLE),
+        BOOLEAN(Storage.LONG),
+        INSTANT(Storage.LONG),
+        CUSTOM(Storage.OBJECT),
+        RECORD(Storage.OBJECT);
+
+        final Storage storage;
+
+        FieldType(Storage storage) {
+            this.storage = storage;
+        }
+
+        static FieldType of(ValueType valueType) {
+            switch (valueType) {
+                case INTEGER:
+                    return INT;
+                case LONG:
+                    return LONG;
+                case DOUBLE:
+                    return DOUBLE;
+                case BOOLEAN:
+                    return BOOLEAN;
+                case INSTANT:
+                    return INSTANT;
+                default:
+                    return STRING;
+            }
+        }
+    }
+
+    enum Storage { LONG, DOUBLE, OBJECT }
+
+    private final String[] names;
+    private final FieldType[] types;
+    private final RecordSchema[] children;
+    private final Map<String, Integer> indexes;
+
+    RecordSchema(String[] names, FieldType[] types, RecordSchema[] children) {
+        this.names = names;
+        this.types = types;
+        this.children = children;
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            indexes.putIfAbsent(names[i], i);
+        }
+        this.indexes = Collections.unmodifiableMap(indexes);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return index of the field or -1 when the schema has no such field
+     */
+    public int indexOf(String field) {
+        Integer index = indexes.get(field);
+        return index == null ? -1 : index;
+    }
+
+    public String name(int field) {
+        return names[field];
+    }
+
+    public FieldType type(int field) {
+        return types[field];
+    }
+
+    /**
+     * @return schema of a {@link FieldType#RECORD} field, null for other fields
+     */
+    public RecordSchema child(int field) {
+        return children[field];
+    }
+
+    public List<String> names() {
+        return List.of(names);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RecordSchema{");
+        for (int i = 0; i < names.length; i++) {
+            sb.append(i == 0 ? "" : ",").append(names[i]).append(':').append(types[i]);
+            if (children[i] != null) {
+                sb.append(children[i]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RecordSchema that = (RecordSchema) o;
+        return Arrays.equals(names, that.names) && Arrays.equals(types, that.types) && Arrays.equals(children, that.children);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(names) + Arrays.hashCode(types);
+    }
+}
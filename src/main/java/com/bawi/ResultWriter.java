@@ -0,0 +1,56 @@
+package com.bawi;
+
+import com.bawi.ExtractionPlan.Node;
+import com.ximpleware.NavException;
+import com.ximpleware.VTDNav;
+
+/**
+ * Receives the values produced by {@link ExtractionPlan} evaluation and assembles them into results of type
+ * {@code R}.
+ * <p>
+ * Calls are strictly nested: {@link #begin(RecordSchema, Node)} opens a record, then for every mapping node in order
+ * {@link #startField(Node)}, any number of {@code value} calls and {@link #endField(Node)}, and {@link #end()}
+ * closes the record. Nested records are opened and closed while the parent field is in progress and handed to
+ * the parent with {@link #value(Node, Object)}.
+ * <p>
+ * Writers are stateful and owned by one pooled parser state, so they may keep and reuse scratch buffers.
+ */
+interface ResultWriter<R> {
+
+    /**
+     * Drops any state left over by a previous evaluation that failed with an exception.
+     */
+    void reset();
+
+    /**
+     * Opens a record of the given schema, mapped by the {@code record} node or by the whole plan when null. Records
+     * evaluated in parallel are opened on a fresh writer without any enclosing record.
+     */
+    void begin(RecordSchema schema, Node record);
+
+    void startField(Node node);
+
+    /**
+     * Adds the value of a {@link ExtractionPlan.Kind#VALUE} node read from the token, using the node's value type.
+     */
+    void value(Node node, VTDNav nav, int tokenIdx) throws NavException;
+
+    /**
+     * Adds an already materialized value: a custom parser result, a nested record or a huge document value.
+     */
+    void value(Node node, Object value);
+
+    /**
+     * Adds the value of a custom node with an integral {@link RecordSchema.FieldType}.
+     */
+    void longValue(Node node, long value);
+
+    /**
+     * Adds the value of a custom node with the {@link RecordSchema.FieldType#DOUBLE} type.
+     */
+    void doubleValue(Node node, double value);
+
+    void endField(Node node);
+
+    R end();
+}
@@ -0,0 +1,107 @@
+package com.bawi;
+
+import com.ximpleware.extended.IByteBuffer;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link IByteBuffer} over equally sized {@link ByteBuffer} segments for {@code VTDGenHuge}: the segments of a
+ * memory-mapped {@link FileChannel} or the direct blocks of an {@link OffHeapBufferArena}.
+ * <p>
+ * Files are mapped in 1 GB segments, so documents above the 2 GB limit of {@code VTDGen} are tokenized straight
+ * from the page cache without being copied onto the heap.
+ */
+final class SegmentedXmlBuffer implements IByteBuffer {
+
+    private static final int MAPPED_SEGMENT_BITS = 30;
+
+    private final ByteBuffer[] segments;
+    private final int segmentBits;
+    private final long segmentMask;
+    private final long length;
+
+    /**
+     * @param segments    buffers of {@code 1 << segmentBits} bytes each except the last one, positioned at 0
+     * @param segmentBits binary logarithm of the segment size
+     */
+    SegmentedXmlBuffer(ByteBuffer[] segments, int segmentBits, long length) {
+        this.segments = segments;
+        this.segmentBits = segmentBits;
+        this.segmentMask = (1L << segmentBits) - 1;
+        this.length = length;
+    }
+
+    static SegmentedXmlBuffer map(FileChannel channel) throws IOException {
+        long length = channel.size();
+        long segmentSize = 1L << MAPPED_SEGMENT_BITS;
+        int count = (int) ((length + segmentSize - 1) >>> MAPPED_SEGMENT_BITS);
+        ByteBuffer[] segments = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long position = (long) i << MAPPED_SEGMENT_BITS;
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, length - position));
+            segments[i] = segment;
+        }
+        return new SegmentedXmlBuffer(segments, MAPPED_SEGMENT_BITS, length);
+    }
+
+    /**
+     * Wraps the remaining bytes of a buffer without copying them.
+     */
+    static SegmentedXmlBuffer wrap(ByteBuffer buffer) {
+        return new SegmentedXmlBuffer(new ByteBuffer[]{buffer.slice()}, 31, buffer.remaining());
+    }
+
+    ByteBuffer[] segments() {
+        return segments;
+    }
+
+    @Override
+    public byte byteAt(long index) {
+        return segments[(int) (index >>> segmentBits)].get((int) (index & segmentMask));
+    }
+
+    @Override
+    public byte[] getBytes(int offset, int len) {
+        byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++) {
+            bytes[i] = byteAt(offset + (long) i);
+        }
+        return bytes;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return null; // the whole document does not fit into an array
+    }
+
+    @Override
+    public void close() {
+        // mapped segments are released by the garbage collector, arena blocks by the arena
+    }
+
+    @Override
+    public void writeToFileOutputStream(FileOutputStream outputStream, long offset, long len) throws IOException {
+        FileChannel target = outputStream.getChannel();
+        long position = offset;
+        long end = offset + len;
+        while (position < end) {
+            ByteBuffer segment = segments[(int) (position >>> segmentBits)].duplicate();
+            int from = (int) (position & segmentMask);
+            int to = (int) Math.min(segment.limit(), from + (end - position));
+            segment.position(from).limit(to);
+            while (segment.hasRemaining()) {
+                target.write(segment);
+            }
+            position += to - from;
+        }
+    }
+}
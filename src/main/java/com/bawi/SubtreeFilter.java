@@ -0,0 +1,241 @@
+package com.bawi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Removes the children of the root element that the mapping never reads before a document is tokenized.
+ * <p>
+ * The children of the root are scanned on the byte level: kept children, the root start and end tags, text,
+ * comments and processing instructions are copied, other child elements are skipped by counting nesting up to their
+ * end tag without being copied or tokenized. A scan is far cheaper than {@code VTDGen.parse} of the skipped bytes,
+ * which is what makes a small header at the start of a huge body cheap to map.
+ * <p>
+ * Like {@link XmlRecordSplitter}, scanning supports ASCII compatible encodings only. Documents in UTF-16, documents
+ * with an internal DTD subset (which may declare entities) and malformed documents are not filtered, so they are
+ * tokenized, and their errors reported, as before.
+ */
+final class SubtreeFilter {
+
+    private final byte[][] keptNames;
+
+    SubtreeFilter(Set<String> keptChildren) {
+        this.keptNames = new byte[keptChildren.size()][];
+        int i = 0;
+        for (String name : keptChildren) {
+            keptNames[i++] = name.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Copies the filtered document to {@code out}, which must hold at least {@code length} bytes.
+     *
+     * @return length of the filtered document, -1 when the document is not filtered or nothing was skipped
+     */
+    int filter(byte[] xml, int offset, int length, byte[] out) {
+        int end = offset + length;
+        if (length < 2 || xml[offset] == 0 || xml[offset + 1] == 0 || (xml[offset] & 0xff) >= 0xfe) {
+            return -1; // UTF-16 with or without byte order mark
+        }
+        int pos = offset;
+        int rootEnd;
+        while (true) { // prolog up to the root start tag
+            int lt = indexOf(xml, (byte) '<', pos, end);
+            if (lt < 0 || lt + 1 >= end) {
+                return -1;
+            }
+            byte b = xml[lt + 1];
+            if (b == '?') {
+                pos = indexOf(xml, "?>", lt + 2, end);
+            } else if (startsWith(xml, "<!--", lt, end)) {
+                pos = indexOf(xml, "-->", lt + 4, end);
+            } else if (b == '!') {
+                pos = scanDoctype(xml, lt + 2, end);
+            } else {
+                rootEnd = scanTagEnd(xml, lt + 1, end);
+                if (rootEnd < 0 || xml[rootEnd - 2] == '/') {
+                    return -1; // malformed or empty root
+                }
+                break;
+            }
+            if (pos < 0) {
+                return -1;
+            }
+        }
+        System.arraycopy(xml, offset, out, 0, rootEnd - offset);
+        int written = rootEnd - offset;
+        boolean skipped = false;
+        pos = rootEnd;
+        while (true) { // children of the root
+            int lt = indexOf(xml, (byte) '<', pos, end);
+            if (lt < 0 || lt + 1 >= end) {
+                return -1;
+            }
+            int next;
+            boolean keep = true;
+            byte b = xml[lt + 1];
+            if (b == '/') {
+                System.arraycopy(xml, pos, out, written, end - pos);
+                return skipped ? written + end - pos : -1;
+            } else if (b == '?' || b == '!') {
+                next = scanOther(xml, lt, end);
+            } else {
+                keep = isKept(xml, lt + 1, end);
+                next = scanElement(xml, lt, end);
+            }
+            if (next < 0) {
+                return -1;
+            }
+            if (keep) {
+                System.arraycopy(xml, pos, out, written, next - pos);
+                written += next - pos;
+            } else {
+                System.arraycopy(xml, pos, out, written, lt - pos); // text before the skipped element
+                written += lt - pos;
+                skipped = true;
+            }
+            pos = next;
+        }
+    }
+
+    private boolean isKept(byte[] xml, int nameStart, int end) {
+        int nameEnd = nameStart;
+        while (nameEnd < end && !isNameEnd(xml[nameEnd])) {
+            nameEnd++;
+        }
+        for (byte[] name : keptNames) {
+            if (name.length == nameEnd - nameStart && regionMatches(xml, nameStart, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return index right after the end tag of the element starting at {@code lt}, -1 when malformed
+     */
+    private static int scanElement(byte[] xml, int lt, int end) {
+        int depth = 0;
+        int pos = lt;
+        while (true) {
+            byte b = xml[pos + 1];
+            int next;
+            if (b == '/') {
+                int gt = indexOf(xml, (byte) '>', pos + 2, end);
+                next = gt < 0 ? -1 : gt + 1;
+                depth--;
+            } else if (b == '?' || b == '!') {
+                next = scanOther(xml, pos, end);
+            } else {
+                next = scanTagEnd(xml, pos + 1, end);
+                if (next > 0 && xml[next - 2] != '/') {
+                    depth++;
+                }
+            }
+            if (next < 0 || depth == 0) {
+                return next;
+            }
+            pos = indexOf(xml, (byte) '<', next, end);
+            if (pos < 0 || pos + 1 >= end) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return index right after a comment, CDATA section or processing instruction starting at {@code lt}
+     */
+    private static int scanOther(byte[] xml, int lt, int end) {
+        if (startsWith(xml, "<!--", lt, end)) {
+            return indexOf(xml, "-->", lt + 4, end);
+        }
+        if (startsWith(xml, "<![CDATA[", lt, end)) {
+            return indexOf(xml, "]]>", lt + 9, end);
+        }
+        if (xml[lt + 1] == '?') {
+            return indexOf(xml, "?>", lt + 2, end);
+        }
+        return -1;
+    }
+
+    /**
+     * @return index right after a DOCTYPE without internal subset, -1 otherwise
+     */
+    private static int scanDoctype(byte[] xml, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (xml[i] == '[') {
+                return -1;
+            }
+            if (xml[i] == '>') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return index right after the {@code >} closing the tag, skipping quoted attribute values
+     */
+    private static int scanTagEnd(byte[] xml, int from, int end) {
+        byte quote = 0;
+        for (int i = from; i < end; i++) {
+            byte b = xml[i];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isNameEnd(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '/' || b == '>';
+    }
+
+    private static int indexOf(byte[] xml, byte b, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (xml[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return index right after the first occurrence of {@code s}, -1 when not found
+     */
+    private static int indexOf(byte[] xml, String s, int from, int end) {
+        for (int i = from; i <= end - s.length(); i++) {
+            if (startsWith(xml, s, i, end)) {
+                return i + s.length();
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] xml, String s, int at, int end) {
+        if (at + s.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (xml[at + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionMatches(byte[] xml, int at, byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (xml[at + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
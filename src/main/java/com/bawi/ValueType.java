@@ -0,0 +1,241 @@
+package com.bawi;
+
+import com.ximpleware.IByteBuffer;
+import com.ximpleware.NavException;
+import com.ximpleware.VTDNav;
+import com.ximpleware.extended.NavExceptionHuge;
+import com.ximpleware.extended.VTDNavHuge;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Supported {@link VtdXmlParser.Entry#clazz} value types and their extraction straight from VTD tokens.
+ * <p>
+ * Numbers are parsed by {@link VTDNav#parseInt(int)}, {@link VTDNav#parseLong(int)} and
+ * {@link VTDNav#parseDouble(int)} directly from the token bytes, booleans ({@code true} in any case or {@code 1},
+ * surrounding whitespace ignored like for numbers) are matched against the token bytes and
+ * {@link Instant}s are read as epoch millis from the raw bytes of single byte encoded documents, so no intermediate
+ * {@link String} is created for any type but {@link #STRING}. The {@code extractLong}/{@code extractDouble} variants
+ * return the primitive value without boxing.
+ * <p>
+ * Malformed numbers raise {@link NumberFormatException} except for doubles which become {@code NaN}, malformed
+ * date/times raise {@link DateTimeParseException}.
+ */
+enum ValueType {
+    STRING(String.class) {
+        @Override
+        Object extract(VTDNav nav, int tokenIdx) throws NavException {
+            return nav.toString(tokenIdx);
+        }
+
+        @Override
+        Object extract(VTDNavHuge nav, int tokenIdx) throws NavExceptionHuge {
+            return nav.toString(tokenIdx);
+        }
+    },
+    INTEGER(Integer.class) {
+        @Override
+        Object extract(VTDNav nav, int tokenIdx) throws NavException {
+            return nav.parseInt(tokenIdx);
+        }
+
+        @Override
+        long extractLong(VTDNav nav, int tokenIdx) throws NavException {
+            return nav.parseInt(tokenIdx);
+        }
+
+        @Override
+        Object extract(VTDNavHuge nav, int tokenIdx) throws NavExceptionHuge {
+            return nav.parseInt(tokenIdx);
+        }
+    },
+    LONG(Long.class) {
+        @Override
+        Object extract(VTDNav nav, int tokenIdx) throws NavException {
+            return nav.parseLong(tokenIdx);
+        }
+
+        @Override
+        long extractLong(VTDNav nav, int tokenIdx) throws NavException {
+            return nav.parseLong(tokenIdx);
+        }
+
+        @Override
+        Object extract(VTDNavHuge nav, int tokenIdx) throws NavExceptionHuge {
+            return nav.parseLong(tokenIdx);
+        }
+    },
+    DOUBLE(Double.class) {
+        @Override
+        Object extract(VTDNav nav, int tokenIdx) throws NavException {
+            return nav.parseDouble(tokenIdx);
+        }
+
+        @Override
+        double extractDouble(VTDNav nav, int tokenIdx) throws NavException {
+            return nav.parseDouble(tokenIdx);
+        }
+
+        @Override
+        Object extract(VTDNavHuge nav, int tokenIdx) throws NavExceptionHuge {
+            return nav.parseDouble(tokenIdx);
+        }
+    },
+    BOOLEAN(Boolean.class) {
+        @Override
+        Object extract(VTDNav nav, int tokenIdx) throws NavException {
+            return extractLong(nav, tokenIdx) != 0;
+        }
+
+        @Override
+        long extractLong(VTDNav nav, int tokenIdx) throws NavException {
+            if (isSingleByte(nav.getEncoding())) {
+                int offset = nav.getTokenOffset(tokenIdx);
+                long value = parseBoolean(nav.getXML(), offset, offset + nav.getTokenLength(tokenIdx));
+                if (value >= 0) {
+                    return value;
+                }
+            }
+            return parseBoolean(nav.toString(tokenIdx));
+        }
+
+        @Override
+        Object extract(VTDNavHuge nav, int tokenIdx) throws NavExceptionHuge {
+            if (isSingleByte(nav.getEncoding())) {
+                int length = nav.getTokenLength(tokenIdx);
+                long value = parseBoolean(EpochMillis.slice(nav.getXML(), nav.getTokenOffset(tokenIdx), length), 0, length);
+                if (value >= 0) {
+                    return value != 0;
+                }
+            }
+            return parseBoolean(nav.toString(tokenIdx)) != 0;
+        }
+    },
+    /**
+     * ISO-8601 date or date-time ({@code 2024-01-31}, {@code 2024-01-31T10:15:30.250+01:00}), UTC when no offset
+     * is given. Extracted as epoch millis.
+     */
+    INSTANT(Instant.class) {
+        @Override
+        Object extract(VTDNav nav, int tokenIdx) throws NavException {
+            return Instant.ofEpochMilli(extractLong(nav, tokenIdx));
+        }
+
+        @Override
+        long extractLong(VTDNav nav, int tokenIdx) throws NavException {
+            if (!isSingleByte(nav.getEncoding())) {
+                return parseEpochMillis(nav.toNormalizedString(tokenIdx));
+            }
+            int offset = nav.getTokenOffset(tokenIdx);
+            int length = nav.getTokenLength(tokenIdx);
+            long millis = EpochMillis.parse(nav.getXML(), offset, offset + length);
+            return millis != EpochMillis.INVALID ? millis : parseEpochMillis(nav.toNormalizedString(tokenIdx));
+        }
+
+        @Override
+        Object extract(VTDNavHuge nav, int tokenIdx) throws NavExceptionHuge {
+            if (!isSingleByte(nav.getEncoding())) {
+                return Instant.ofEpochMilli(parseEpochMillis(nav.toNormalizedString(tokenIdx)));
+            }
+            long offset = nav.getTokenOffset(tokenIdx);
+            int length = nav.getTokenLength(tokenIdx);
+            long millis = EpochMillis.parse(EpochMillis.slice(nav.getXML(), offset, length), 0, length);
+            return Instant.ofEpochMilli(millis != EpochMillis.INVALID ? millis : parseEpochMillis(nav.toNormalizedString(tokenIdx)));
+        }
+    };
+
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+
+    final Class<?> clazz;
+
+    ValueType(Class<?> clazz) {
+        this.clazz = clazz;
+    }
+
+    abstract Object extract(VTDNav nav, int tokenIdx) throws NavException;
+
+    abstract Object extract(VTDNavHuge nav, int tokenIdx) throws NavExceptionHuge;
+
+    long extractLong(VTDNav nav, int tokenIdx) throws NavException {
+        throw new UnsupportedOperationException(this + " is not an integral type");
+    }
+
+    double extractDouble(VTDNav nav, int tokenIdx) throws NavException {
+        return extractLong(nav, tokenIdx);
+    }
+
+    /**
+     * @return the value type for the entry class or null when the class is not a supported value type
+     */
+    static ValueType of(Class<?> clazz) {
+        for (ValueType valueType : values()) {
+            if (valueType.clazz == clazz) {
+                return valueType;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSingleByte(int encoding) {
+        return encoding != VTDNav.FORMAT_UTF_16BE && encoding != VTDNav.FORMAT_UTF_16LE;
+    }
+
+    /**
+     * @return 1 for {@code true}/{@code 1}, 0 for anything else and -1 when the token holds an entity reference and
+     * has to be decoded first
+     */
+    private static long parseBoolean(IByteBuffer xml, int from, int to) {
+        while (from < to && isWhitespace(xml.byteAt(from))) {
+            from++;
+        }
+        while (to > from && isWhitespace(xml.byteAt(to - 1))) {
+            to--;
+        }
+        for (int i = from; i < to; i++) {
+            if (xml.byteAt(i) == '&') {
+                return -1;
+            }
+        }
+        if (to - from == 1) {
+            return xml.byteAt(from) == '1' ? 1 : 0;
+        }
+        if (to - from != TRUE.length) {
+            return 0;
+        }
+        for (int i = 0; i < TRUE.length; i++) {
+            if ((xml.byteAt(from + i) | 0x20) != TRUE[i]) {
+                return 0;
+            }
+        }
+        return 1;
+    }
+
+    private static long parseBoolean(String value) {
+        String trimmed = value.trim();
+        return "true".equalsIgnoreCase(trimmed) || "1".equals(trimmed) ? 1 : 0;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    /**
+     * Slow path for date/times the byte level parser does not handle (entities, UTF-16, unusual layouts).
+     */
+    private static long parseEpochMillis(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() == 10) {
+            return LocalDate.parse(trimmed).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+        try {
+            return OffsetDateTime.parse(trimmed).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(trimmed).toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.bawi;
+
+import com.ximpleware.IndexReadException;
+import com.ximpleware.IndexWriteException;
+import com.ximpleware.ParseException;
+import com.ximpleware.VTDGen;
+import com.ximpleware.VTDNav;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the VTD index of repeatedly mapped files, so they are tokenized once rather than on every
+ * {@link AbstractVtdXmlParser#parseFile(Path, VtdIndexCache)}.
+ * <p>
+ * Indexes are persisted with {@link VTDGen#writeSeparateIndex(OutputStream)}, which stores only the VTD and location
+ * cache records, and loaded back with {@link VTDGen#loadSeparateIndex(String, String)} together with the file
+ * itself. An index file is named after the XML file, its modification time and size, and lives next to the file or,
+ * prefixed with a hash of the absolute path, in a cache directory. Changing the file therefore selects a new index
+ * and the stale one is deleted when the new one is written.
+ * <p>
+ * Loaded documents are kept in memory in least recently used order up to a bound on their total size. Each use gets
+ * its own {@link VTDNav#cloneNav() clone} sharing the document and index buffers, so the cache can be shared by
+ * any number of parsers, mappings and threads.
+ * <p>
+ * Only documents accepted by {@link VTDGen} (below 2 GB) can be indexed, {@code VTDGenHuge} has no persistent index.
+ */
+public class VtdIndexCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VtdIndexCache.class);
+
+    static final String INDEX_SUFFIX = ".vtdidx";
+
+    /** Part of an index file name after {@link #indexPrefix(Path)}: hex modification time and hex size. */
+    private static final Pattern INDEX_VERSION = Pattern.compile("[0-9a-f]+\\.[0-9a-f]+" + Pattern.quote(INDEX_SUFFIX));
+
+    private static final class CachedDocument {
+        final long modified;
+        final long size;
+        final VTDNav nav;
+
+        CachedDocument(long modified, long size, VTDNav nav) {
+            this.modified = modified;
+            this.size = size;
+            this.nav = nav;
+        }
+    }
+
+    private final Path cacheDirectory;
+    private final long maxCachedBytes;
+    private final LinkedHashMap<Path, CachedDocument> documents = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    /**
+     * Stores every index next to its XML file.
+     *
+     * @param maxCachedBytes bound of the total size of the documents kept in memory, 0 to keep none
+     */
+    public VtdIndexCache(long maxCachedBytes) {
+        this(null, maxCachedBytes);
+    }
+
+    /**
+     * @param cacheDirectory directory of the index files, null to store them next to the XML files
+     * @param maxCachedBytes bound of the total size of the documents kept in memory, 0 to keep none
+     */
+    public VtdIndexCache(Path cacheDirectory, long maxCachedBytes) {
+        this.cacheDirectory = cacheDirectory;
+        this.maxCachedBytes = maxCachedBytes;
+    }
+
+    /**
+     * Tokenizes the file and writes its index unless a current one exists, e.g. to prepare reference files ahead of
+     * the first mapping.
+     */
+    public void index(Path xmlFile) {
+        nav(xmlFile);
+    }
+
+    /**
+     * @return a navigator positioned at the root element of the file, from memory, the index file or a new parse
+     */
+    VTDNav nav(Path xmlFile) {
+        Path file = xmlFile.toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            LOGGER.error("Failed to read attributes of file " + file, e);
+            throw new UncheckedIOException(e);
+        }
+        long modified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        synchronized (documents) {
+            CachedDocument document = documents.get(file);
+            if (document != null && document.modified == modified && document.size == size) {
+                return document.nav.cloneNav();
+            }
+        }
+        VTDNav nav = load(file, indexFile(file, modified, size));
+        synchronized (documents) {
+            CachedDocument previous = documents.put(file, new CachedDocument(modified, size, nav));
+            cachedBytes += size - (previous == null ? 0 : previous.size);
+            evict();
+        }
+        return nav.cloneNav();
+    }
+
+    /**
+     * Drops the file from memory and deletes its index files.
+     */
+    public void invalidate(Path xmlFile) {
+        Path file = xmlFile.toAbsolutePath().normalize();
+        synchronized (documents) {
+            CachedDocument previous = documents.remove(file);
+            if (previous != null) {
+                cachedBytes -= previous.size;
+            }
+        }
+        deleteIndexes(file, null);
+    }
+
+    /**
+     * Drops all documents from memory, index files are kept.
+     */
+    public void clear() {
+        synchronized (documents) {
+            documents.clear();
+            cachedBytes = 0;
+        }
+    }
+
+    /**
+     * @return number of documents held in memory
+     */
+    public int size() {
+        synchronized (documents) {
+            return documents.size();
+        }
+    }
+
+    private void evict() {
+        Iterator<CachedDocument> eldest = documents.values().iterator();
+        while (cachedBytes > maxCachedBytes && eldest.hasNext()) {
+            cachedBytes -= eldest.next().size;
+            eldest.remove();
+        }
+    }
+
+    private VTDNav load(Path file, Path indexFile) {
+        VTDGen vtdGen = new VTDGen();
+        if (Files.exists(indexFile)) {
+            try {
+                return vtdGen.loadSeparateIndex(file.toString(), indexFile.toString());
+            } catch (IOException | IndexReadException e) {
+                LOGGER.warn("Failed to load index " + indexFile + ", parsing " + file + " again", e);
+            }
+            vtdGen = new VTDGen();
+        }
+        try {
+            vtdGen.setDoc(Files.readAllBytes(file));
+            vtdGen.parse(false);
+        } catch (IOException e) {
+            LOGGER.error("Failed to read file " + file, e);
+            throw new UncheckedIOException(e);
+        } catch (ParseException e) {
+            LOGGER.error("Failed to parse file " + file, e);
+            throw new RuntimeException(e);
+        }
+        writeIndex(vtdGen, file, indexFile);
+        return vtdGen.getNav();
+    }
+
+    /**
+     * Writes to a temporary file first, so concurrent readers never see a partial index. Failing to write the index
+     * only costs a parse next time.
+     */
+    private void writeIndex(VTDGen vtdGen, Path file, Path indexFile) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(indexFile.getParent());
+            temporary = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                vtdGen.writeSeparateIndex(out);
+            }
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            deleteIndexes(file, indexFile);
+        } catch (IOException | IndexWriteException e) {
+            LOGGER.warn("Failed to write index " + indexFile, e);
+            try {
+                if (temporary != null) {
+                    Files.deleteIfExists(temporary);
+                }
+            } catch (IOException ignored) {
+                // already reported the write failure
+            }
+        }
+    }
+
+    private void deleteIndexes(Path file, Path current) {
+        Path directory = cacheDirectory != null ? cacheDirectory : file.getParent();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        String prefix = indexPrefix(file);
+        DirectoryStream.Filter<Path> filter = path -> {
+            String name = path.getFileName().toString();
+            return name.startsWith(prefix) && INDEX_VERSION.matcher(name).region(prefix.length(), name.length()).matches();
+        };
+        try (DirectoryStream<Path> indexes = Files.newDirectoryStream(directory, filter)) {
+            for (Path index : indexes) {
+                if (!index.equals(current)) {
+                    Files.deleteIfExists(index);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete stale indexes of " + file, e);
+        }
+    }
+
+    Path indexFile(Path file, long modified, long size) {
+        String name = indexPrefix(file) + Long.toHexString(modified) + "." + Long.toHexString(size) + INDEX_SUFFIX;
+        return cacheDirectory != null ? cacheDirectory.resolve(name) : file.resolveSibling(name);
+    }
+
+    private String indexPrefix(Path file) {
+        String name = file.getFileName() + ".";
+        return cacheDirectory != null ? pathHash(file) + "-" + name : name;
+    }
+
+    private static String pathHash(Path file) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(file.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hash = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hash.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.Encoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Maps XML documents straight to Avro {@link GenericRecord}s of a given record {@link Schema}, without building the
+ * intermediate {@code Map<String, Object>} of {@link VtdXmlParser}.
+ * <p>
+ * The mapping is either derived from the schema with {@link #mappingOf(Schema)} or given explicitly, in which case
+ * every entry field must name a field of the corresponding Avro record. Entries with children map to Avro records or
+ * arrays of records, values to primitive fields or arrays of primitives. The {@code writeTo} methods stream records
+ * of a large document directly into a {@link DataFileWriter} or binary {@link Encoder}.
+ */
+public class VtdXmlAvroParser extends AbstractVtdXmlParser<GenericRecord> {
+
+    /** Avro field property holding the xpath of the field, relative to the enclosing record element. */
+    public static final String XPATH_PROPERTY = "xpath";
+
+    private final Schema schema;
+
+    public VtdXmlAvroParser(Schema schema) {
+        this(schema, mappingOf(schema));
+    }
+
+    public VtdXmlAvroParser(Schema schema, List<Entry> mappingEntries) {
+        this(schema, mappingEntries, Options.defaults());
+    }
+
+    public VtdXmlAvroParser(Schema schema, List<Entry> mappingEntries, Options options) {
+        this(schema, AvroLayout.of(schema, mappingEntries), mappingEntries, options);
+    }
+
+    private VtdXmlAvroParser(Schema schema, AvroLayout layout, List<Entry> mappingEntries, Options options) {
+        super(mappingEntries, options, () -> new AvroResultWriter(layout));
+        this.schema = schema;
+    }
+
+    public Schema schema() {
+        return schema;
+    }
+
+    /**
+     * Derives a mapping from an Avro record schema. Each field maps to the xpath in its {@value #XPATH_PROPERTY}
+     * property, or to the child element named like the field. Nested records and arrays of records become entries
+     * with children, {@code timestamp-millis} longs are read as {@link Instant}s and nullable unions as their
+     * non-null type.
+     */
+    public static List<Entry> mappingOf(Schema schema) {
+        if (schema.getType() != Schema.Type.RECORD) {
+            throw new IllegalArgumentException("Avro record schema expected but was " + schema);
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (Schema.Field field : schema.getFields()) {
+            String xpath = field.getProp(XPATH_PROPERTY) != null ? field.getProp(XPATH_PROPERTY) : field.name();
+            Schema type = AvroLayout.nonNull(field.schema());
+            if (type.getType() == Schema.Type.ARRAY) {
+                type = AvroLayout.nonNull(type.getElementType());
+            }
+            if (type.getType() == Schema.Type.RECORD) {
+                entries.add(new Entry(field.name(), xpath, mappingOf(type)));
+            } else {
+                entries.add(new Entry(field.name(), xpath, valueClass(field, type)));
+            }
+        }
+        return entries;
+    }
+
+    private static Class<?> valueClass(Schema.Field field, Schema type) {
+        switch (type.getType()) {
+            case STRING:
+            case ENUM:
+                return String.class;
+            case INT:
+                return Integer.class;
+            case LONG:
+                return type.getLogicalType() instanceof LogicalTypes.TimestampMillis ? Instant.class : Long.class;
+            case FLOAT:
+            case DOUBLE:
+                return Double.class;
+            case BOOLEAN:
+                return Boolean.class;
+            default:
+                throw new IllegalArgumentException("Unsupported Avro type " + type + " of field " + field.name());
+        }
+    }
+
+    /**
+     * Appends one record per {@code recordElement} of the input stream to the data file, see
+     * {@link #stream(InputStream, String)}. The input stream is closed, the writer is left open.
+     *
+     * @return number of records written
+     */
+    public long writeTo(InputStream inputStream, String recordElement, DataFileWriter<GenericRecord> dataFileWriter) throws IOException {
+        long count = 0;
+        try (Stream<GenericRecord> records = stream(inputStream, recordElement)) {
+            Iterator<GenericRecord> iterator = records.iterator();
+            while (iterator.hasNext()) {
+                dataFileWriter.append(iterator.next());
+                count++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count;
+    }
+
+    /**
+     * Binary encodes one record per {@code recordElement} of the input stream, see {@link #stream(InputStream, String)}.
+     * The input stream is closed, the encoder is flushed.
+     *
+     * @return number of records written
+     */
+    public long writeTo(InputStream inputStream, String recordElement, Encoder encoder) throws IOException {
+        DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(schema);
+        long count = 0;
+        try (Stream<GenericRecord> records = stream(inputStream, recordElement)) {
+            Iterator<GenericRecord> iterator = records.iterator();
+            while (iterator.hasNext()) {
+                datumWriter.write(iterator.next(), encoder);
+                count++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        encoder.flush();
+        return count;
+    }
+}
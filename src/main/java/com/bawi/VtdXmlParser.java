@@ -1,17 +1,17 @@
 package com.bawi;
 
-import com.bawi.parser.CustomFieldParser;
-import com.ximpleware.*;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
-public class VtdXmlParser {
-    private static final Logger LOGGER = LoggerFactory.getLogger(VtdXmlParser.class);
+/**
+ * Maps XML documents to {@code Map<String, Object>} according to a list of {@link Entry} definitions.
+ * <p>
+ * A field maps to null when its xpath does not match, to the value for a single match and to a list of values for
+ * several matches. Entries with children map to nested maps the same way. See {@link AbstractVtdXmlParser} for the
+ * supported inputs and thread-safety.
+ */
+public class VtdXmlParser extends AbstractVtdXmlParser<Map<String, Object>> {
 
     public static class Entry implements Serializable {
         String field;
@@ -57,141 +57,25 @@ public class VtdXmlParser {
         }
     }
 
-    private final Map<Class<?>, Function<String, ?>> typeTransformations = Map.of(
-            String.class, s -> s,
-            Integer.class, Integer::parseInt
-    );
-
-    private final List<Entry> mappingEntries;
-
     public VtdXmlParser(List<Entry> mappingEntries) {
-        this.mappingEntries = mappingEntries;
+        this(mappingEntries, Options.defaults());
     }
 
-    public Map<String, Object> parseFile(String xmlFilePath) {
-        VTDGen vtdGen = new VTDGen();
-        vtdGen.parseFile(xmlFilePath, false);
-        VTDNav nav = vtdGen.getNav();
-        return parseVTDGen(nav, mappingEntries);
-    }
-
-    public Map<String, Object> parseXml(String xmlFilePath) {
-        VTDGen vtdGen = new VTDGen();
-        vtdGen.setDoc(xmlFilePath.getBytes());
-        try {
-            vtdGen.parse(false);
-            VTDNav nav = vtdGen.getNav();
-            return parseVTDGen(nav, mappingEntries);
-        } catch (ParseException e) {
-            LOGGER.error("Failed to parse", e);
-            throw new RuntimeException(e);
-        }
+    public VtdXmlParser(List<Entry> mappingEntries, Options options) {
+        super(mappingEntries, options, MapResultWriter::new);
     }
 
-    private Map<String, Object> parseVTDGen(VTDNav nav, List<Entry> mappingEntries) {
-        Map<String, Object> result = new HashMap<>();
-        mappingEntries.forEach(entry -> {
-            try {
-                if (entry.children.size() > 0) {
-                    List<Map<String, Object>> recordAsMapList = processRecord(nav, entry);
-                    Object value = recordAsMapList.size() == 0 ? null : recordAsMapList.size() == 1 ? recordAsMapList.get(0) : recordAsMapList;
-                    result.put(entry.field, value);
-                } else if (entry.clazz != null && CustomFieldParser.class.isAssignableFrom(entry.clazz)) {
-                    Object value = parseField(nav, entry);
-                    result.put(entry.field, value);
-                } else {
-                    Function<String, ?> typeTransformationFunction = typeTransformations.get(entry.clazz);
-                    List<String> values = extractValue(nav, entry);
-                    List<?> transformedValues = values.stream().map(typeTransformationFunction).collect(Collectors.toList());
-                    Object transformed = transformedValues.size() == 0 ? null : transformedValues.size() == 1 ? transformedValues.get(0) : transformedValues;
-                    result.put(entry.field, transformed);
-                }
-            } catch (XPathParseException e) {
-                LOGGER.error("Failed to parse value for entry " + entry , e);
-            }
-        });
-        return result;
-    }
-
-    private List<Map<String, Object>> processRecord(VTDNav nav, Entry entry) throws XPathParseException {
-        String xpath = entry.xpath;
-        List<Map<String, Object>> results = new ArrayList<>();
-        AutoPilot ap = new AutoPilot();
-        ap.selectXPath(xpath);
-        ap.bind(nav);
-        try {
-            while (ap.evalXPath() > 0) { // requires a while loop, not if statement
-                List<Entry> children = entry.children;
-                Map<String, Object> recordAsMap = parseVTDGen(nav, children);
-//                LOGGER.info("Record: {} => {}", xpath, recordAsMap);
-                results.add(recordAsMap);
-            }
-        } catch (VTDException e) {
-            LOGGER.error("Failed to process record for entry " + entry , e);
-        }
-        finally {
-            ap.resetXPath();
-        }
-//        LOGGER.info("Records: {} => {}", xpath, results);
-        return results;
+    public LazyResult parseLazy(byte[] xml) {
+        return parseLazy(xml, 0, xml.length);
     }
 
-    private static Object parseField(VTDNav nav, Entry entry) throws XPathParseException {
-        AutoPilot ap = new AutoPilot(nav);
-        ap.selectXPath(entry.xpath);
-        ap.bind(nav);
-        try {
-            CustomFieldParser fieldParser = (CustomFieldParser) entry.clazz.getDeclaredConstructor((Class<?>[]) null).newInstance();
-            return fieldParser.parse(entry.field, entry.xpath, ap, nav);
-        } catch (Exception e) {
-            LOGGER.error("Failed to parse value for entry " + entry , e);
-        }
-        finally {
-            ap.resetXPath();
-        }
-        return null;
-    }
-
-    private static List<String> extractValue(VTDNav nav, Entry entry) {
-        String xpath = entry.xpath;
-        List<String> results = new ArrayList<>();
-        AutoPilot ap = new AutoPilot();
-        try {
-            ap.selectXPath(xpath);
-            ap.bind(nav);
-
-            if (xpath.startsWith("@") || xpath.contains("/@")) {
-                int i;
-                while((i = ap.evalXPath()) > 0) { // requires a while loop, not if statement
-                    String attrName = nav.toString(i);
-                    int attrIdx = nav.getAttrVal(attrName);
-                    if (attrIdx != -1) {
-                        String attrValue = nav.toString(attrIdx);
-//                        LOGGER.info("AttrValue: {} => {}", xpath, attrValue);
-                        results.add(attrValue);
-                    }
-                }
-            } else {
-                while (ap.evalXPath() != -1) { // requires a while loop, not if statement
-                    long attrPosition = nav.getContentFragment();
-                    if (attrPosition != -1) {
-                        int textTokenIdx = nav.getText();
-                        String text = nav.toString(textTokenIdx);
-//                        LOGGER.info("Text: {} => {}", xpath, text);
-                        results.add(text);
-                    }
-                }
-            }
-        }
-        catch (VTDException e) {
-            LOGGER.error("Failed to extract value for entry " + entry , e);
-        }
-        finally {
-            ap.resetXPath();
-        }
-
-//        LOGGER.info("Values: {} => {}", xpath, results);
-        return results;
+    /**
+     * Tokenizes the document and returns a view mapping each top level entry on first access, e.g. for routing code
+     * that reads one field of most documents. The caller must not modify the array before the view is closed or
+     * detached. Parallel record evaluation does not apply to lazy views.
+     */
+    public LazyResult parseLazy(byte[] xml, int offset, int length) {
+        return new LazyResult(this, tokenize(xml, offset, length));
     }
 
 }
@@ -0,0 +1,30 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+
+import java.util.List;
+
+/**
+ * Maps XML documents to schema-indexed {@link Record}s instead of maps.
+ * <p>
+ * The mapping is the same as for {@link VtdXmlParser}, but int, long, double, boolean and instant values are kept
+ * in primitive columns and fields are accessed by the index from {@link #schema()}, avoiding per-field boxing,
+ * hashing and list allocation.
+ */
+public class VtdXmlRecordParser extends AbstractVtdXmlParser<Record> {
+
+    public VtdXmlRecordParser(List<Entry> mappingEntries) {
+        this(mappingEntries, Options.defaults());
+    }
+
+    public VtdXmlRecordParser(List<Entry> mappingEntries, Options options) {
+        super(mappingEntries, options, RecordResultWriter::new);
+    }
+
+    /**
+     * @return layout of the top level records returned by this parser
+     */
+    public RecordSchema schema() {
+        return plan().schema();
+    }
+}
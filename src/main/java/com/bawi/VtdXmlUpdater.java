@@ -0,0 +1,452 @@
+package com.bawi;
+
+import com.bawi.ExtractionPlan.Context;
+import com.bawi.ExtractionPlan.Kind;
+import com.bawi.ExtractionPlan.Node;
+import com.bawi.ParserStatePool.ParserState;
+import com.bawi.VtdXmlParser.Entry;
+import com.ximpleware.AutoPilot;
+import com.ximpleware.ModifyException;
+import com.ximpleware.NavException;
+import com.ximpleware.ParseException;
+import com.ximpleware.TranscodeException;
+import com.ximpleware.VTDException;
+import com.ximpleware.VTDGen;
+import com.ximpleware.VTDNav;
+import com.ximpleware.XMLModifier;
+import com.ximpleware.XPathParseException;
+import com.ximpleware.xpath.Step;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies field updates to XML documents in place with {@link XMLModifier}, addressing the fields by the same
+ * {@link Entry} mapping as {@link VtdXmlParser}, and writes the updated document to an output stream or channel.
+ * <p>
+ * The document is tokenized once and no tree is built: the output copies the unchanged byte ranges of the
+ * original document and only the updated tokens and inserted fragments are written anew.
+ * <ul>
+ *     <li>A value updates the attribute value or the text of every match of the field's xpath. An element without
+ *     text gets the value as its first content.</li>
+ *     <li>A {@link List} assigns its values to the matches in document order and must have one value per match.</li>
+ *     <li>A {@link Map} updates the children of every match of a record entry.</li>
+ *     <li>Null removes every matched attribute or element, including the elements of a record entry.</li>
+ *     <li>When a simple path ending in an attribute or a child name (e.g. {@code @id}, {@code address/@code},
+ *     {@code salary/bonus}) matches nothing, the value is inserted as that attribute or as the last child element
+ *     of every element matched by the rest of the path.</li>
+ * </ul>
+ * Values are written with {@link String#valueOf(Object)} and escaped. Custom parser entries cannot be updated. Each
+ * token can be changed once per document, so overlapping updates (e.g. removing an element and updating a field
+ * inside it) fail. Instances are thread-safe and pool their {@link VTDGen} and precompiled {@link AutoPilot}s like
+ * the parsers.
+ */
+public class VtdXmlUpdater {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VtdXmlUpdater.class);
+
+    /**
+     * Tuning of the updater, e.g. {@code Options.defaults().withMaxIdleStates(4)}. Instances are immutable, every
+     * {@code with} method returns a modified copy.
+     */
+    public static final class Options {
+        private static final Options DEFAULTS = new Options(2 * Runtime.getRuntime().availableProcessors());
+
+        final int maxIdleStates;
+
+        private Options(int maxIdleStates) {
+            this.maxIdleStates = maxIdleStates;
+        }
+
+        /**
+         * Twice as many pooled states as processors.
+         */
+        public static Options defaults() {
+            return DEFAULTS;
+        }
+
+        /**
+         * @param maxIdleStates upper bound of pooled {@link VTDGen}/{@link AutoPilot} states kept between updates
+         */
+        public Options withMaxIdleStates(int maxIdleStates) {
+            if (maxIdleStates < 0) {
+                throw new IllegalArgumentException("Max idle states must not be negative but was " + maxIdleStates);
+            }
+            return new Options(maxIdleStates);
+        }
+    }
+
+    private static final class UpdateState extends ParserState<Void> {
+        /** Modifier of the current document, created per document as binding reallocates all of its buffers. */
+        XMLModifier modifier;
+        /** Pilot of the elements receiving inserts, per slot, null for slots inserting into the context element. */
+        final AutoPilot[] parentPilots;
+        private final List<Step> parentStepPilots = new ArrayList<>();
+        /** Inserted attributes and child elements per element index, merged as one insert per offset is allowed. */
+        final Map<Integer, StringBuilder> attributeInserts = new LinkedHashMap<>();
+        final Map<Integer, StringBuilder> elementInserts = new LinkedHashMap<>();
+
+        UpdateState(Context context, AutoPilot[] parentPilots) {
+            super(context, null);
+            this.parentPilots = parentPilots;
+            for (AutoPilot pilot : parentPilots) {
+                if (pilot != null) {
+                    parentStepPilots.addAll(XPathStepPilots.of(pilot));
+                }
+            }
+        }
+
+        /**
+         * Also drops the modifier and unbinds the parent pilots like the pilots of the context.
+         */
+        @Override
+        void clear() {
+            super.clear();
+            modifier = null;
+            for (AutoPilot pilot : parentPilots) {
+                if (pilot != null) {
+                    pilot.bind(ExtractionPlan.EMPTY_NAV);
+                }
+            }
+            for (Step step : parentStepPilots) {
+                step.o = null;
+            }
+            attributeInserts.clear();
+            elementInserts.clear();
+        }
+    }
+
+    private final ExtractionPlan plan;
+    private final String[] parentXpaths;
+    private final String[] insertedNames;
+    private final ParserStatePool<Void> statePool;
+
+    public VtdXmlUpdater(List<Entry> mappingEntries) {
+        this(mappingEntries, Options.defaults());
+    }
+
+    public VtdXmlUpdater(List<Entry> mappingEntries, Options options) {
+        this.plan = ExtractionPlan.compile(mappingEntries);
+        int slots = countSlots(plan.nodes());
+        this.parentXpaths = new String[slots];
+        this.insertedNames = new String[slots];
+        indexInserts(plan.nodes());
+        this.statePool = ParserStatePool.of(this::newState, options.maxIdleStates);
+        newState(); // fail fast on invalid parent xpath
+    }
+
+    public void update(byte[] xml, Map<String, ?> updates, OutputStream out) {
+        update(xml, 0, xml.length, updates, out);
+    }
+
+    /**
+     * Writes the updated document to the channel, e.g. a {@link FileChannel} at its current position.
+     */
+    public void update(byte[] xml, Map<String, ?> updates, WritableByteChannel out) {
+        update(xml, 0, xml.length, updates, Channels.newOutputStream(out));
+    }
+
+    /**
+     * Updates {@code length} bytes of {@code xml} starting at {@code offset} and writes the whole updated document,
+     * keeping its encoding. The array is not modified.
+     *
+     * @throws IllegalArgumentException for fields not in the mapping, custom parser fields, list values not
+     *                                  matching the number of matches and overlapping updates
+     */
+    public void update(byte[] xml, int offset, int length, Map<String, ?> updates, OutputStream out) {
+        UpdateState state = (UpdateState) statePool.acquire();
+        try {
+            state.setDoc(xml, offset, length);
+            state.vtdGen.parse(false);
+            VTDNav nav = state.vtdGen.getNav();
+            state.modifier = new XMLModifier(nav);
+            apply(nav, state, plan.nodes(), updates);
+            flushInserts(nav, state);
+            state.modifier.output(out);
+        } catch (ParseException e) {
+            LOGGER.error("Failed to parse", e);
+            throw new RuntimeException(e);
+        } catch (ModifyException e) {
+            LOGGER.error("Failed to update document", e);
+            throw new IllegalArgumentException("Conflicting updates " + updates.keySet(), e);
+        } catch (TranscodeException e) {
+            LOGGER.error("Failed to write updated document", e);
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            LOGGER.error("Failed to write updated document", e);
+            throw new UncheckedIOException(e);
+        } finally {
+            statePool.release(state);
+        }
+    }
+
+    /**
+     * Updates the source file and writes the result to the target file, which is created or replaced.
+     */
+    public void updateFile(Path source, Map<String, ?> updates, Path target) {
+        byte[] xml;
+        try {
+            xml = Files.readAllBytes(source);
+        } catch (IOException e) {
+            LOGGER.error("Failed to read file " + source, e);
+            throw new UncheckedIOException(e);
+        }
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            update(xml, updates, out);
+        } catch (IOException e) {
+            LOGGER.error("Failed to write file " + target, e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void apply(VTDNav nav, UpdateState state, List<Node> nodes, Map<String, ?> updates) throws ModifyException {
+        for (Map.Entry<String, ?> update : updates.entrySet()) {
+            Node node = find(nodes, update.getKey());
+            nav.push();
+            try {
+                if (node.kind == Kind.RECORD) {
+                    updateRecords(nav, state, node, update.getValue());
+                } else {
+                    updateValues(nav, state, node, update.getValue());
+                }
+            } catch (NavException | UnsupportedEncodingException e) {
+                LOGGER.error("Failed to update entry " + node.entry, e);
+                throw new RuntimeException(e);
+            } finally {
+                nav.pop();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void updateRecords(VTDNav nav, UpdateState state, Node node, Object value) throws ModifyException, NavException {
+        if (value != null && !(value instanceof Map)) {
+            throw new IllegalArgumentException("Record entry " + node.path + " is updated with a map of its fields but was " + value);
+        }
+        collect(nav, state.context, node);
+        int count = state.context.matchCount(node.slot);
+        int[] records = state.context.matches(node.slot);
+        for (int i = 0; i < count; i++) {
+            nav.recoverNode(records[i]);
+            if (value == null) {
+                state.modifier.remove();
+            } else {
+                apply(nav, state, node.children, (Map<String, ?>) value);
+            }
+        }
+    }
+
+    private void updateValues(VTDNav nav, UpdateState state, Node node, Object value)
+            throws ModifyException, NavException, UnsupportedEncodingException {
+        collect(nav, state.context, node);
+        int count = state.context.matchCount(node.slot);
+        int[] matches = state.context.matches(node.slot);
+        if (value instanceof List) {
+            List<?> values = (List<?>) value;
+            if (values.size() != count) {
+                throw new IllegalArgumentException(values.size() + " values for " + count + " matches of entry " + node.path);
+            }
+            for (int i = 0; i < count; i++) {
+                update(nav, state.modifier, node, matches[i], values.get(i));
+            }
+        } else if (count > 0) {
+            for (int i = 0; i < count; i++) {
+                update(nav, state.modifier, node, matches[i], value);
+            }
+        } else if (value != null && insertedNames[node.slot] != null) {
+            insert(nav, state, node, String.valueOf(value));
+        }
+    }
+
+    /**
+     * @param match attribute name token or element index
+     */
+    private static void update(VTDNav nav, XMLModifier modifier, Node node, int match, Object value)
+            throws ModifyException, NavException, UnsupportedEncodingException {
+        if (node.attribute) {
+            if (value == null) {
+                modifier.removeAttribute(match);
+            } else {
+                modifier.updateToken(match + 1, escape(String.valueOf(value), true));
+            }
+            return;
+        }
+        nav.recoverNode(match);
+        if (value == null) {
+            modifier.remove();
+            return;
+        }
+        int textTokenIdx = nav.getText();
+        if (textTokenIdx != -1) {
+            modifier.updateToken(textTokenIdx, escape(String.valueOf(value), false));
+        } else {
+            modifier.insertAfterHead(escape(String.valueOf(value), false));
+        }
+    }
+
+    private void insert(VTDNav nav, UpdateState state, Node node, String value) {
+        String name = insertedNames[node.slot];
+        String fragment = node.attribute
+                ? " " + name + "=\"" + escape(value, true) + "\""
+                : "<" + name + ">" + escape(value, false) + "</" + name + ">";
+        AutoPilot parents = state.parentPilots[node.slot];
+        Map<Integer, StringBuilder> inserts = node.attribute ? state.attributeInserts : state.elementInserts;
+        if (parents == null) {
+            inserts.computeIfAbsent(nav.getCurrentIndex(), i -> new StringBuilder()).append(fragment);
+            return;
+        }
+        parents.bind(nav);
+        try {
+            while (parents.evalXPath() != -1) {
+                inserts.computeIfAbsent(nav.getCurrentIndex(), i -> new StringBuilder()).append(fragment);
+            }
+        } catch (VTDException e) {
+            LOGGER.error("Failed to insert entry " + node.entry, e);
+            throw new RuntimeException(e);
+        } finally {
+            parents.resetXPath();
+        }
+    }
+
+    private static void flushInserts(VTDNav nav, UpdateState state) throws ModifyException {
+        try {
+            for (Map.Entry<Integer, StringBuilder> insert : state.attributeInserts.entrySet()) {
+                nav.recoverNode(insert.getKey());
+                state.modifier.insertAttribute(insert.getValue().toString());
+            }
+            for (Map.Entry<Integer, StringBuilder> insert : state.elementInserts.entrySet()) {
+                nav.recoverNode(insert.getKey());
+                state.modifier.insertBeforeTail(insert.getValue().toString());
+            }
+        } catch (NavException | UnsupportedEncodingException e) {
+            LOGGER.error("Failed to insert fields", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Collects the attribute name tokens or element indexes of all matches into the context before anything is
+     * changed, leaving the cursor where it was.
+     */
+    private static void collect(VTDNav nav, Context context, Node node) {
+        context.clearMatches(node.slot);
+        AutoPilot ap = context.pilot(node.slot);
+        ap.bind(nav);
+        try {
+            int i;
+            while ((i = ap.evalXPath()) != -1) {
+                context.addMatch(node.slot, node.attribute ? i : nav.getCurrentIndex());
+            }
+        } catch (VTDException e) {
+            LOGGER.error("Failed to evaluate entry " + node.entry, e);
+            throw new RuntimeException(e);
+        } finally {
+            ap.resetXPath();
+        }
+    }
+
+    private static Node find(List<Node> nodes, String field) {
+        for (Node node : nodes) {
+            if (node.entry.field.equals(field)) {
+                if (node.kind == Kind.CUSTOM) {
+                    throw new IllegalArgumentException("Custom parser entry " + node.path + " cannot be updated");
+                }
+                return node;
+            }
+        }
+        throw new IllegalArgumentException("Unknown field " + field);
+    }
+
+    /**
+     * Values can be inserted for simple paths whose last step is an attribute or a plain child name.
+     */
+    private void indexInserts(List<Node> nodes) {
+        for (Node node : nodes) {
+            String xpath = node.entry.xpath;
+            String[] steps = PathWalker.simplePath(xpath);
+            String last = steps == null ? null : steps[steps.length - 1];
+            if (node.kind == Kind.VALUE && last != null && last.indexOf('[') < 0) {
+                insertedNames[node.slot] = last.startsWith("@") ? last.substring(1) : last;
+                int slash = xpath.lastIndexOf('/');
+                parentXpaths[node.slot] = slash < 0 ? null : xpath.substring(0, slash);
+            }
+            indexInserts(node.children);
+        }
+    }
+
+    private static int countSlots(List<Node> nodes) {
+        int count = nodes.size();
+        for (Node node : nodes) {
+            count += countSlots(node.children);
+        }
+        return count;
+    }
+
+    private static String escape(String value, boolean attribute) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String entity;
+            switch (c) {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '"':
+                    entity = attribute ? "&quot;" : null;
+                    break;
+                case '\'':
+                    entity = attribute ? "&apos;" : null;
+                    break;
+                default:
+                    entity = null;
+            }
+            if (entity != null && escaped == null) {
+                escaped = new StringBuilder(value.length() + 16).append(value, 0, i);
+            }
+            if (escaped != null) {
+                if (entity != null) {
+                    escaped.append(entity);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+
+    private UpdateState newState() {
+        AutoPilot[] parentPilots = new AutoPilot[parentXpaths.length];
+        for (int i = 0; i < parentXpaths.length; i++) {
+            if (parentXpaths[i] != null) {
+                AutoPilot ap = new AutoPilot();
+                try {
+                    ap.selectXPath(parentXpaths[i]);
+                } catch (XPathParseException e) {
+                    throw new IllegalArgumentException("Invalid xpath " + parentXpaths[i], e);
+                }
+                parentPilots[i] = ap;
+            }
+        }
+        return new UpdateState(plan.newContext(), parentPilots);
+    }
+}
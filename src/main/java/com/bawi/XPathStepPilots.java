@@ -0,0 +1,121 @@
+package com.bawi;
+
+import com.ximpleware.AutoPilot;
+import com.ximpleware.VTDNav;
+import com.ximpleware.extended.AutoPilotHuge;
+import com.ximpleware.extended.VTDNavHuge;
+import com.ximpleware.xpath.Step;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the steps of a compiled xpath that keep a pilot of their own in {@code Step.o}.
+ * <p>
+ * vtd-xml creates that pilot on the first evaluation of an attribute or descendant step and only rebinds it on the
+ * next evaluation, so binding the owning pilot to another document does not release the last one. The steps are
+ * looked up once per context by walking the compiled expression; dropping their pilots when the context goes idle
+ * makes the next evaluation create them again for its own document.
+ */
+final class XPathStepPilots {
+
+    private static final Field EXPRESSION;
+    private static final Field HUGE_EXPRESSION;
+
+    static {
+        try {
+            EXPRESSION = AutoPilot.class.getDeclaredField("xpe");
+            EXPRESSION.setAccessible(true);
+            HUGE_EXPRESSION = AutoPilotHuge.class.getDeclaredField("xpe");
+            HUGE_EXPRESSION.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private XPathStepPilots() {
+    }
+
+    static List<Step> of(AutoPilot pilot) {
+        return find(expression(EXPRESSION, pilot), Step.class);
+    }
+
+    static List<com.ximpleware.extended.xpath.Step> of(AutoPilotHuge pilot) {
+        return find(expression(HUGE_EXPRESSION, pilot), com.ximpleware.extended.xpath.Step.class);
+    }
+
+    private static Object expression(Field field, Object pilot) {
+        try {
+            return field.get(pilot);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to read compiled xpath", e);
+        }
+    }
+
+    /**
+     * Walks the expression objects of vtd-xml reachable from the root without entering navigators or pilots.
+     */
+    private static <T> List<T> find(Object root, Class<T> stepType) {
+        List<T> steps = new ArrayList<>();
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> pending = new ArrayDeque<>();
+        if (root != null) {
+            pending.push(root);
+        }
+        while (!pending.isEmpty()) {
+            Object current = pending.pop();
+            if (!visited.add(current)) {
+                continue;
+            }
+            Class<?> type = current.getClass();
+            if (type.isArray()) {
+                for (int i = 0; i < Array.getLength(current); i++) {
+                    Object element = Array.get(current, i);
+                    if (element != null && walkable(element)) {
+                        pending.push(element);
+                    }
+                }
+                continue;
+            }
+            if (stepType.isInstance(current)) {
+                steps.add(stepType.cast(current));
+            }
+            for (Class<?> declaring = type; declaring != null; declaring = declaring.getSuperclass()) {
+                for (Field field : declaring.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    Object value;
+                    try {
+                        value = field.get(current);
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException("Failed to read compiled xpath", e);
+                    }
+                    if (value != null && walkable(value)) {
+                        pending.push(value);
+                    }
+                }
+            }
+        }
+        return steps;
+    }
+
+    private static boolean walkable(Object value) {
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            return !type.getComponentType().isPrimitive();
+        }
+        return type.getName().startsWith("com.ximpleware.")
+                && !(value instanceof VTDNav || value instanceof VTDNavHuge
+                || value instanceof AutoPilot || value instanceof AutoPilotHuge);
+    }
+}
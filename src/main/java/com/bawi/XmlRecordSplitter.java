@@ -0,0 +1,345 @@
+package com.bawi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cuts an XML byte stream into standalone record documents, one per occurrence of a configured element.
+ * <p>
+ * The input is read in bounded chunks and only the bytes of the record currently being cut (plus one chunk) are kept,
+ * so memory use does not depend on the size of the whole document. Records are recognized by element name at any
+ * depth; everything outside of them (wrappers, comments, processing instructions, DTD) is skipped. Element nesting
+ * inside a record is tracked, so a record element may contain elements of the same name.
+ * <p>
+ * Scanning works on bytes and therefore supports ASCII compatible encodings (UTF-8, ISO-8859-x, windows-125x). When
+ * the document declares a non UTF-8 encoding its XML declaration is prepended to every record, so each record is
+ * decoded the same way as the original document.
+ * <p>
+ * Not thread-safe, the returned record bytes are only valid until the next call to {@link #next()}.
+ */
+final class XmlRecordSplitter {
+
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private static final int START_TAG = 1;
+    private static final int END_TAG = 2;
+    private static final int EMPTY_TAG = 3;
+    private static final int OTHER = 4;
+
+    private final InputStream in;
+    private final byte[] recordName;
+    private final int chunkSize;
+
+    private byte[] buf;
+    private int start; // first byte that is still needed
+    private int pos;   // scan position
+    private int end;   // end of valid data
+    private boolean eof;
+    private boolean prologScanned;
+
+    private int markupType;
+    private byte[] declaration;
+    private byte[] declaredRecord = new byte[0];
+
+    private byte[] recordBuffer;
+    private int recordOffset;
+    private int recordLength;
+
+    XmlRecordSplitter(InputStream in, String recordElement) {
+        this(in, recordElement, DEFAULT_CHUNK_SIZE);
+    }
+
+    XmlRecordSplitter(InputStream in, String recordElement, int chunkSize) {
+        this.in = in;
+        this.recordName = recordElement.getBytes(StandardCharsets.UTF_8);
+        this.chunkSize = chunkSize;
+        this.buf = new byte[chunkSize];
+    }
+
+    /**
+     * Advances to the next record.
+     *
+     * @return false when the input has no more records
+     */
+    boolean next() throws IOException {
+        while (true) {
+            int lt = indexOf((byte) '<', pos);
+            if (lt < 0) {
+                start = pos = end; // only character data so far, nothing to keep
+                if (!fill()) {
+                    return false;
+                }
+                continue;
+            }
+            start = pos = lt;
+            int markupEnd = scanMarkup(lt);
+            if (markupEnd < 0) {
+                if (!fill()) {
+                    throw new IOException("Unexpected end of XML document");
+                }
+                continue;
+            }
+            if (markupType == START_TAG || markupType == EMPTY_TAG) {
+                prologScanned = true;
+                if (matchesRecordName(lt + 1)) {
+                    if (markupType == START_TAG) {
+                        pos = markupEnd;
+                        markupEnd = scanRecordBody();
+                    }
+                    emit(start, markupEnd);
+                    start = pos = markupEnd;
+                    return true;
+                }
+            }
+            pos = markupEnd;
+        }
+    }
+
+    byte[] buffer() {
+        return recordBuffer;
+    }
+
+    int offset() {
+        return recordOffset;
+    }
+
+    int length() {
+        return recordLength;
+    }
+
+    /**
+     * Scans from {@link #pos} (right after the record start tag) to the end of the matching end tag.
+     */
+    private int scanRecordBody() throws IOException {
+        int depth = 1;
+        while (true) {
+            int lt = indexOf((byte) '<', pos);
+            if (lt < 0) {
+                pos = end;
+                if (!fill()) {
+                    throw new IOException("Unexpected end of XML document inside record");
+                }
+                continue;
+            }
+            pos = lt;
+            int markupEnd = scanMarkup(lt);
+            if (markupEnd < 0) {
+                if (!fill()) {
+                    throw new IOException("Unexpected end of XML document inside record");
+                }
+                continue;
+            }
+            if (markupType == START_TAG) {
+                depth++;
+            } else if (markupType == END_TAG && --depth == 0) {
+                return markupEnd;
+            }
+            pos = markupEnd;
+        }
+    }
+
+    private void emit(int from, int to) {
+        if (declaration == null) {
+            recordBuffer = buf;
+            recordOffset = from;
+            recordLength = to - from;
+            return;
+        }
+        int length = declaration.length + to - from;
+        if (declaredRecord.length < length) {
+            declaredRecord = new byte[length];
+        }
+        System.arraycopy(declaration, 0, declaredRecord, 0, declaration.length);
+        System.arraycopy(buf, from, declaredRecord, declaration.length, to - from);
+        recordBuffer = declaredRecord;
+        recordOffset = 0;
+        recordLength = length;
+    }
+
+    /**
+     * Scans one markup construct starting at {@code lt} and sets {@link #markupType}.
+     *
+     * @return index right after the construct or -1 when more input is needed
+     */
+    private int scanMarkup(int lt) {
+        if (lt + 1 >= end) {
+            return -1;
+        }
+        byte b = buf[lt + 1];
+        if (b == '/') {
+            markupType = END_TAG;
+            int gt = indexOf((byte) '>', lt + 2);
+            return gt < 0 ? -1 : gt + 1;
+        }
+        if (b == '?') {
+            markupType = OTHER;
+            int close = indexOf("?>", lt + 2);
+            if (close >= 0 && !prologScanned) {
+                captureDeclaration(lt, close + 2);
+            }
+            return close < 0 ? -1 : close + 2;
+        }
+        if (b == '!') {
+            markupType = OTHER;
+            if (startsWith("<!--", lt)) {
+                int close = indexOf("-->", lt + 4);
+                return close < 0 ? -1 : close + 3;
+            }
+            if (startsWith("<![CDATA[", lt)) {
+                int close = indexOf("]]>", lt + 9);
+                return close < 0 ? -1 : close + 3;
+            }
+            if (lt + 9 > end && !eof) {
+                return -1;
+            }
+            return scanDeclaration(lt + 2);
+        }
+        int gt = scanTagEnd(lt + 1);
+        if (gt < 0) {
+            return -1;
+        }
+        markupType = buf[gt - 1] == '/' ? EMPTY_TAG : START_TAG;
+        return gt + 1;
+    }
+
+    /**
+     * Finds the closing '&gt;' of a start tag, skipping quoted attribute values.
+     */
+    private int scanTagEnd(int from) {
+        byte quote = 0;
+        for (int i = from; i < end; i++) {
+            byte b = buf[i];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Scans a DOCTYPE like declaration, including an internal subset in brackets.
+     */
+    private int scanDeclaration(int from) {
+        byte quote = 0;
+        int brackets = 0;
+        for (int i = from; i < end; i++) {
+            byte b = buf[i];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '[') {
+                brackets++;
+            } else if (b == ']') {
+                brackets--;
+            } else if (b == '>' && brackets == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private void captureDeclaration(int from, int to) {
+        if (!startsWith("<?xml", from)) {
+            return;
+        }
+        prologScanned = true;
+        String xmlDeclaration = new String(buf, from, to - from, StandardCharsets.ISO_8859_1);
+        int encodingIdx = xmlDeclaration.indexOf("encoding");
+        if (encodingIdx < 0) {
+            return;
+        }
+        String encoding = xmlDeclaration.substring(encodingIdx).replaceFirst("^encoding\\s*=\\s*[\"']([^\"']*)[\"'][\\s\\S]*", "$1");
+        if (!encoding.equalsIgnoreCase("UTF-8") && !encoding.equalsIgnoreCase("UTF8")) {
+            declaration = new byte[to - from];
+            System.arraycopy(buf, from, declaration, 0, declaration.length);
+        }
+    }
+
+    private boolean matchesRecordName(int nameStart) {
+        int nameEnd = nameStart + recordName.length;
+        if (nameEnd >= end) {
+            return false;
+        }
+        for (int i = 0; i < recordName.length; i++) {
+            if (buf[nameStart + i] != recordName[i]) {
+                return false;
+            }
+        }
+        byte b = buf[nameEnd];
+        return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private int indexOf(byte b, int from) {
+        for (int i = from; i < end; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(String s, int from) {
+        int last = end - s.length();
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < s.length(); j++) {
+                if (buf[i + j] != s.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private boolean startsWith(String s, int from) {
+        if (from + s.length() > end) {
+            return false;
+        }
+        for (int j = 0; j < s.length(); j++) {
+            if (buf[from + j] != s.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops consumed bytes and reads the next chunk.
+     *
+     * @return false on end of input
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, end - start);
+            end -= start;
+            pos -= start;
+            start = 0;
+        }
+        if (buf.length - end < chunkSize) {
+            byte[] grown = new byte[Math.max(buf.length * 2, end + chunkSize)];
+            System.arraycopy(buf, 0, grown, 0, end);
+            buf = grown;
+        }
+        int read = in.read(buf, end, buf.length - end);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        end += read;
+        return true;
+    }
+}
@@ -0,0 +1,88 @@
+package com.bawi.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes parser metrics to a Micrometer {@link MeterRegistry}, tagged with the parser name and, for entry
+ * metrics, the entry path:
+ * <ul>
+ *     <li>{@code vtdxml.parse} timer and {@code vtdxml.parse.bytes} summary per tokenized document</li>
+ *     <li>{@code vtdxml.mapping} timer per mapped document and {@code vtdxml.parse.failures} counter</li>
+ *     <li>{@code vtdxml.entry} timer, {@code vtdxml.entry.matches} summary and {@code vtdxml.entry.failures} counter</li>
+ * </ul>
+ * Requires the optional {@code micrometer-core} dependency. Meters are resolved once per entry path and cached.
+ */
+public class MicrometerParserMetrics implements ParserMetrics {
+
+    private static final class EntryMeters {
+        final Timer time;
+        final DistributionSummary matches;
+        final Counter failures;
+
+        EntryMeters(Timer time, DistributionSummary matches, Counter failures) {
+            this.time = time;
+            this.matches = matches;
+            this.failures = failures;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final String parser;
+    private final Timer parseTime;
+    private final DistributionSummary parsedBytes;
+    private final Counter parseFailures;
+    private final Timer mappingTime;
+    private final ConcurrentMap<String, EntryMeters> entries = new ConcurrentHashMap<>();
+
+    public MicrometerParserMetrics(MeterRegistry registry, String parser) {
+        this.registry = registry;
+        this.parser = parser;
+        this.parseTime = Timer.builder("vtdxml.parse").tag("parser", parser).publishPercentiles(0.5, 0.99).register(registry);
+        this.parsedBytes = DistributionSummary.builder("vtdxml.parse.bytes").baseUnit("bytes").tag("parser", parser).register(registry);
+        this.parseFailures = Counter.builder("vtdxml.parse.failures").tag("parser", parser).register(registry);
+        this.mappingTime = Timer.builder("vtdxml.mapping").tag("parser", parser).publishPercentiles(0.5, 0.99).register(registry);
+    }
+
+    @Override
+    public void documentParsed(long bytes, long nanos) {
+        parseTime.record(nanos, TimeUnit.NANOSECONDS);
+        parsedBytes.record(bytes);
+    }
+
+    @Override
+    public void documentMapped(long nanos) {
+        mappingTime.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void documentFailed(Throwable cause) {
+        parseFailures.increment();
+    }
+
+    @Override
+    public void entryEvaluated(String path, int matches, long nanos) {
+        EntryMeters meters = entry(path);
+        meters.time.record(nanos, TimeUnit.NANOSECONDS);
+        meters.matches.record(matches);
+    }
+
+    @Override
+    public void entryFailed(String path, Throwable cause) {
+        entry(path).failures.increment();
+    }
+
+    private EntryMeters entry(String path) {
+        EntryMeters meters = entries.get(path);
+        return meters != null ? meters : entries.computeIfAbsent(path, p -> new EntryMeters(
+                Timer.builder("vtdxml.entry").tag("parser", parser).tag("entry", p).publishPercentiles(0.99).register(registry),
+                DistributionSummary.builder("vtdxml.entry.matches").tag("parser", parser).tag("entry", p).register(registry),
+                Counter.builder("vtdxml.entry.failures").tag("parser", parser).tag("entry", p).register(registry)));
+    }
+}
@@ -0,0 +1,57 @@
+package com.bawi.metrics;
+
+/**
+ * Receives timings and counts from the parse and mapping hot path.
+ * <p>
+ * Entries are identified by their field path, the fields from the top level record down to the entry joined with
+ * {@code /}, e.g. {@code staff/employees/name}. Implementations are called concurrently by every thread using the
+ * parser and must not block.
+ * <p>
+ * {@link #NOOP} reports {@link #enabled()} false, in which case the parser neither reads the clock nor calls any
+ * method, so metrics cost nothing when disabled.
+ */
+public interface ParserMetrics {
+
+    ParserMetrics NOOP = new ParserMetrics() {
+        @Override
+        public boolean enabled() {
+            return false;
+        }
+    };
+
+    default boolean enabled() {
+        return true;
+    }
+
+    /**
+     * A document of {@code bytes} bytes was tokenized by {@code VTDGen} or {@code VTDGenHuge}.
+     */
+    default void documentParsed(long bytes, long nanos) {
+    }
+
+    /**
+     * All entries of a tokenized document were evaluated.
+     */
+    default void documentMapped(long nanos) {
+    }
+
+    /**
+     * Tokenizing a document failed.
+     */
+    default void documentFailed(Throwable cause) {
+    }
+
+    /**
+     * An entry was evaluated once for its enclosing record. {@code nanos} includes nested entries of a record entry.
+     *
+     * @param matches number of values or records produced
+     */
+    default void entryEvaluated(String path, int matches, long nanos) {
+    }
+
+    /**
+     * Evaluating an entry failed, the entry maps to the values produced before the failure.
+     */
+    default void entryFailed(String path, Throwable cause) {
+    }
+}
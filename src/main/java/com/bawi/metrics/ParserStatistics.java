@@ -0,0 +1,178 @@
+package com.bawi.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * In-process {@link ParserMetrics} built from {@link LongAdder}s and {@link LatencyHistogram}s, so recording never
+ * takes a lock. Exposed over JMX with {@link #registerMBean(String)}.
+ * <p>
+ * Entry evaluations slower than the slow entry threshold are logged as warnings with the entry path, which points
+ * at the mapping responsible for a slow document.
+ */
+public class ParserStatistics implements ParserMetrics, ParserStatisticsMXBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParserStatistics.class);
+
+    private static final class EntryStatistics {
+        final LongAdder evaluations = new LongAdder();
+        final LongAdder matches = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LatencyHistogram time = new LatencyHistogram();
+    }
+
+    private final long slowEntryThresholdNanos;
+    private final LongAdder documents = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder documentFailures = new LongAdder();
+    private final LatencyHistogram parseTime = new LatencyHistogram();
+    private final LatencyHistogram mappingTime = new LatencyHistogram();
+    private final ConcurrentMap<String, EntryStatistics> entries = new ConcurrentHashMap<>();
+
+    public ParserStatistics() {
+        this(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param slowEntryThreshold entry evaluations taking longer are logged
+     */
+    public ParserStatistics(long slowEntryThreshold, TimeUnit unit) {
+        this.slowEntryThresholdNanos = unit.toNanos(slowEntryThreshold);
+    }
+
+    @Override
+    public void documentParsed(long bytes, long nanos) {
+        documents.increment();
+        this.bytes.add(bytes);
+        parseTime.record(nanos);
+    }
+
+    @Override
+    public void documentMapped(long nanos) {
+        mappingTime.record(nanos);
+    }
+
+    @Override
+    public void documentFailed(Throwable cause) {
+        documentFailures.increment();
+    }
+
+    @Override
+    public void entryEvaluated(String path, int matches, long nanos) {
+        EntryStatistics statistics = entry(path);
+        statistics.evaluations.increment();
+        statistics.matches.add(matches);
+        statistics.time.record(nanos);
+        if (nanos > slowEntryThresholdNanos) {
+            LOGGER.warn("Slow entry " + path + " took " + TimeUnit.NANOSECONDS.toMicros(nanos) + " us for " + matches + " matches");
+        }
+    }
+
+    @Override
+    public void entryFailed(String path, Throwable cause) {
+        entry(path).failures.increment();
+    }
+
+    private EntryStatistics entry(String path) {
+        EntryStatistics statistics = entries.get(path);
+        return statistics != null ? statistics : entries.computeIfAbsent(path, p -> new EntryStatistics());
+    }
+
+    /**
+     * Registers this instance with the platform MBean server as {@code com.bawi:type=VtdXmlParser,name=<name>}.
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.bawi:type=VtdXmlParser,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            LOGGER.error("Failed to register parser statistics " + name, e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public long getDocumentCount() {
+        return documents.sum();
+    }
+
+    @Override
+    public long getBytesParsed() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getDocumentFailureCount() {
+        return documentFailures.sum();
+    }
+
+    @Override
+    public long getParseTimeP50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(parseTime.percentile(50));
+    }
+
+    @Override
+    public long getParseTimeP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(parseTime.percentile(99));
+    }
+
+    @Override
+    public long getMappingTimeP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(mappingTime.percentile(99));
+    }
+
+    @Override
+    public Map<String, Long> getEntryEvaluationCounts() {
+        return entryValues(statistics -> statistics.evaluations.sum());
+    }
+
+    @Override
+    public Map<String, Long> getEntryMatchCounts() {
+        return entryValues(statistics -> statistics.matches.sum());
+    }
+
+    @Override
+    public Map<String, Long> getEntryFailureCounts() {
+        return entryValues(statistics -> statistics.failures.sum());
+    }
+
+    @Override
+    public Map<String, Long> getEntryTimeP99Micros() {
+        return entryValues(statistics -> TimeUnit.NANOSECONDS.toMicros(statistics.time.percentile(99)));
+    }
+
+    /**
+     * @return evaluation time percentile of the entry in nanoseconds, 0 when the entry was not evaluated
+     */
+    public long entryTimePercentile(String path, double percentile) {
+        EntryStatistics statistics = entries.get(path);
+        return statistics == null ? 0 : statistics.time.percentile(percentile);
+    }
+
+    @Override
+    public void reset() {
+        documents.reset();
+        bytes.reset();
+        documentFailures.reset();
+        parseTime.reset();
+        mappingTime.reset();
+        entries.clear();
+    }
+
+    private Map<String, Long> entryValues(ToLongFunction<EntryStatistics> value) {
+        Map<String, Long> values = new TreeMap<>();
+        entries.forEach((path, statistics) -> values.put(path, value.applyAsLong(statistics)));
+        return values;
+    }
+}
@@ -0,0 +1,31 @@
+package com.bawi.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link ParserStatistics}. Times are in microseconds.
+ */
+public interface ParserStatisticsMXBean {
+
+    long getDocumentCount();
+
+    long getBytesParsed();
+
+    long getDocumentFailureCount();
+
+    long getParseTimeP50Micros();
+
+    long getParseTimeP99Micros();
+
+    long getMappingTimeP99Micros();
+
+    Map<String, Long> getEntryEvaluationCounts();
+
+    Map<String, Long> getEntryMatchCounts();
+
+    Map<String, Long> getEntryFailureCounts();
+
+    Map<String, Long> getEntryTimeP99Micros();
+
+    void reset();
+}
@@ -1,9 +1,20 @@
 package com.bawi.parser;
 
-import com.ximpleware.AutoPilot;
 import com.ximpleware.VTDException;
-import com.ximpleware.VTDNav;
 
+/**
+ * Computes the value of a mapping entry from the matches of its xpath.
+ * <p>
+ * One instance is created per mapping entry when the parser is built and then shared by all documents and threads,
+ * so implementations must be stateless (or thread-safe) and need a no-arg constructor. Each call receives a
+ * {@link FieldEvaluator} whose xpath is already compiled and bound to the current element of the document being
+ * parsed. Implement {@link IntFieldParser}, {@link LongFieldParser} or {@link DoubleFieldParser} to return a
+ * primitive value that is stored without boxing.
+ */
 public interface CustomFieldParser {
-    Object parse(String field, String xpath, AutoPilot ap, VTDNav nav) throws VTDException;
+
+    /**
+     * @return the value of the field, null when the field has no value
+     */
+    Object parse(FieldEvaluator evaluator) throws VTDException;
 }
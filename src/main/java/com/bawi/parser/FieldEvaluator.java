@@ -0,0 +1,42 @@
+package com.bawi.parser;
+
+import com.ximpleware.VTDException;
+
+/**
+ * Precompiled xpath of a custom mapping entry bound to the current element, passed to
+ * {@link CustomFieldParser#parse(FieldEvaluator)}.
+ * <p>
+ * The same methods work for documents parsed with {@code VTDGen} and {@code VTDGenHuge}. Matches are consumed
+ * once per call of the custom parser; the evaluator is reset by the mapping afterwards. Token indexes are only valid
+ * for the evaluator that returned them.
+ */
+public interface FieldEvaluator {
+
+    String field();
+
+    String xpath();
+
+    /**
+     * @return value token of the next match, the attribute value or the element text, -1 when there are no more
+     * matches. Elements without text are skipped.
+     */
+    int nextValue() throws VTDException;
+
+    String toString(int tokenIdx) throws VTDException;
+
+    int parseInt(int tokenIdx) throws VTDException;
+
+    long parseLong(int tokenIdx) throws VTDException;
+
+    double parseDouble(int tokenIdx) throws VTDException;
+
+    /**
+     * @return the XPath {@code string()} value of the xpath, empty when nothing matches
+     */
+    String evalString();
+
+    /**
+     * @return the XPath {@code number()} value of the xpath, {@code NaN} when nothing matches
+     */
+    double evalNumber();
+}
@@ -0,0 +1,17 @@
+package com.bawi.parser;
+
+import com.ximpleware.VTDException;
+
+/**
+ * {@link CustomFieldParser} producing an int, stored in the primitive column of a {@code Record} without boxing. The
+ * field always has a value.
+ */
+public interface IntFieldParser extends CustomFieldParser {
+
+    int parseInt(FieldEvaluator evaluator) throws VTDException;
+
+    @Override
+    default Object parse(FieldEvaluator evaluator) throws VTDException {
+        return parseInt(evaluator);
+    }
+}
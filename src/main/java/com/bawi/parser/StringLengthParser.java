@@ -1,19 +1,9 @@
 package com.bawi.parser;
 
-import com.ximpleware.AutoPilot;
-import com.ximpleware.VTDNav;
-import com.ximpleware.XPathParseException;
-
-public class StringLengthParser implements CustomFieldParser {
+public class StringLengthParser implements IntFieldParser {
 
     @Override
-    public Object parse(String field, String xpath, AutoPilot ap, VTDNav nav) {
-        try {
-            ap.selectXPath(xpath);
-        } catch (XPathParseException e) {
-            e.printStackTrace();
-        }
-        String s = ap.evalXPathToString();
-        return s.length();
+    public int parseInt(FieldEvaluator evaluator) {
+        return evaluator.evalString().length();
     }
 }
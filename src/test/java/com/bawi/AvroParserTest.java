@@ -0,0 +1,122 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.parser.SumValuesParser;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.file.SeekableByteArrayInput;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AvroParserTest {
+
+    private static final Schema COLLEGE = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"College\",\"fields\":[" +
+            "{\"name\":\"id\",\"type\":\"int\",\"xpath\":\"@id\"}," +
+            "{\"name\":\"description\",\"type\":[\"null\",\"string\"],\"default\":null}," +
+            "{\"name\":\"staff\",\"type\":{\"type\":\"array\",\"items\":{\"type\":\"record\",\"name\":\"Staff\",\"fields\":[" +
+            "    {\"name\":\"id\",\"type\":\"long\",\"xpath\":\"@id\"}," +
+            "    {\"name\":\"dep_name\",\"type\":{\"type\":\"enum\",\"name\":\"Dep\",\"symbols\":[\"Admin\",\"HR\",\"IT\"]},\"xpath\":\"@dep_name\"}," +
+            "    {\"name\":\"employee_names\",\"type\":{\"type\":\"array\",\"items\":\"string\"},\"xpath\":\"employee/@name\"}," +
+            "    {\"name\":\"basic_salary\",\"type\":\"double\",\"xpath\":\"salary/basic\"}," +
+            "    {\"name\":\"country\",\"type\":[\"null\",\"string\"],\"default\":null,\"xpath\":\"address/country\"}," +
+            "    {\"name\":\"active\",\"type\":\"boolean\",\"default\":true,\"xpath\":\"@active\"}]}}}" +
+            "]}");
+
+    @Test
+    public void shouldParseXmlFileToGenericRecord() {
+        // given
+        VtdXmlAvroParser avroParser = new VtdXmlAvroParser(COLLEGE);
+
+        // when
+        GenericRecord result = avroParser.parseFile("src/test/resources/college.xml");
+
+        // then
+        Assertions.assertTrue(GenericData.get().validate(COLLEGE, result));
+        Assertions.assertEquals(123, result.get("id"));
+        Assertions.assertEquals("US college", result.get("description"));
+        List<?> staff = (List<?>) result.get("staff");
+        Assertions.assertEquals(3, staff.size());
+        GenericRecord admin = (GenericRecord) staff.get(0);
+        Assertions.assertEquals(101L, admin.get("id"));
+        Assertions.assertEquals("Admin", admin.get("dep_name").toString());
+        Assertions.assertEquals(List.of("ashish", "amit", "nupur"), new ArrayList<>((List<?>) admin.get("employee_names")));
+        Assertions.assertEquals(20000.0, admin.get("basic_salary"));
+        Assertions.assertEquals("United States", admin.get("country"));
+        Assertions.assertEquals(true, admin.get("active"));
+        Assertions.assertNull(((GenericRecord) staff.get(1)).get("country"));
+    }
+
+    @Test
+    public void shouldUseExplicitMappingWithCustomParser() {
+        // given
+        Schema schema = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"Summary\",\"fields\":[" +
+                "{\"name\":\"salary_sum\",\"type\":\"long\"}," +
+                "{\"name\":\"created\",\"type\":{\"type\":\"long\",\"logicalType\":\"timestamp-millis\"}}]}");
+        VtdXmlAvroParser avroParser = new VtdXmlAvroParser(schema, List.of(
+                new Entry("salary_sum", "staff/salary/basic", SumValuesParser.class),
+                new Entry("created", "@created", Instant.class)));
+
+        // when
+        GenericRecord result = avroParser.parseXml("<college created=\"2024-03-01T10:00:00Z\">" +
+                "<staff><salary><basic>1</basic></salary></staff><staff><salary><basic>2</basic></salary></staff></college>");
+
+        // then
+        Assertions.assertEquals(3L, result.get("salary_sum"));
+        Assertions.assertEquals(Instant.parse("2024-03-01T10:00:00Z").toEpochMilli(), result.get("created"));
+        Assertions.assertEquals(VtdXmlAvroParser.mappingOf(schema).get(1), new Entry("created", "created", Instant.class));
+    }
+
+    @Test
+    public void shouldRejectMappingNotMatchingSchema() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new VtdXmlAvroParser(COLLEGE, List.of(new Entry("unknown", "@id", Integer.class))));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new VtdXmlAvroParser(COLLEGE, List.of(new Entry("id", "@id", String.class))));
+    }
+
+    @Test
+    public void shouldWriteStreamedRecordsToDataFileAndEncoder() throws Exception {
+        // given
+        VtdXmlAvroParser avroParser = new VtdXmlAvroParser(COLLEGE.getField("staff").schema().getElementType());
+        ByteArrayOutputStream dataFile = new ByteArrayOutputStream();
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+
+        // when
+        long written;
+        try (DataFileWriter<GenericRecord> dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<>(avroParser.schema()))) {
+            dataFileWriter.create(avroParser.schema(), dataFile);
+            written = avroParser.writeTo(new FileInputStream("src/test/resources/college.xml"), "staff", dataFileWriter);
+        }
+        long encoded = avroParser.writeTo(new ByteArrayInputStream("<a><staff id=\"7\" dep_name=\"IT\"><salary><basic>1.5</basic></salary></staff></a>"
+                .getBytes(StandardCharsets.UTF_8)), "staff", EncoderFactory.get().binaryEncoder(binary, null));
+
+        // then
+        Assertions.assertEquals(3, written);
+        List<Long> ids = new ArrayList<>();
+        try (DataFileReader<GenericRecord> reader = new DataFileReader<>(new SeekableByteArrayInput(dataFile.toByteArray()), new GenericDatumReader<>())) {
+            reader.forEach(record -> ids.add((Long) record.get("id")));
+        }
+        Assertions.assertEquals(List.of(101L, 102L, 103L), ids);
+        Assertions.assertEquals(1, encoded);
+        BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(binary.toByteArray(), null);
+        GenericRecord decoded = new GenericDatumReader<GenericRecord>(avroParser.schema()).read(null, decoder);
+        Assertions.assertEquals(7L, decoded.get("id"));
+        Assertions.assertEquals(1.5, decoded.get("basic_salary"));
+    }
+}
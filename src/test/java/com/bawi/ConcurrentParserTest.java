@@ -0,0 +1,117 @@
+package com.bawi;
+
+import com.bawi.AbstractVtdXmlParser.Options;
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.parser.SumValuesParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConcurrentParserTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentParserTest.class);
+
+    private static final String XML_FILE_PATH = "src/test/resources/college.xml";
+    private static final int PARSES_PER_THREAD = 500;
+
+    private final VtdXmlParser vtdXmlParser = new VtdXmlParser(List.of(
+            new Entry("college_id", "@id", Integer.class),
+            new Entry("staff", "staff", List.of(
+                    new Entry("id", "@id", Integer.class),
+                    new Entry("departament", "@dep_name"))),
+            new Entry("staff_basic_salary_sum", "staff/salary/basic", SumValuesParser.class)
+    ));
+
+    @Test
+    public void shouldShareOneParserAcrossPlatformThreads() throws Exception {
+        Map<String, Object> expected = vtdXmlParser.parseFile(XML_FILE_PATH);
+        double singleThreadThroughput = 0;
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                double throughput = run(executor, threads, expected);
+                if (threads == 1) {
+                    singleThreadThroughput = throughput;
+                }
+                LOGGER.info("threads={} throughput={} docs/s speedup={}", threads, (long) throughput, throughput / singleThreadThroughput);
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void shouldShareOneParserAcrossVirtualThreads() throws Exception {
+        Map<String, Object> expected = vtdXmlParser.parseFile(XML_FILE_PATH);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            double throughput = run(executor, 64, expected);
+            LOGGER.info("virtual threads=64 throughput={} docs/s", (long) throughput);
+        }
+    }
+
+    @Test
+    public void shouldNotPinDocumentsInIdleStates() throws Exception {
+        // given
+        VtdXmlParser parser = new VtdXmlParser(List.of(
+                new Entry("college_id", "@id", Integer.class),
+                new Entry("staff_ids", "staff/@id", Integer.class),
+                new Entry("basic_salaries", "./descendant::basic", Integer.class),
+                new Entry("staff_basic_salary_sum", "staff/salary/basic", SumValuesParser.class)),
+                Options.defaults().withMaxIdleStates(1));
+        byte[] small = Files.readAllBytes(Path.of(XML_FILE_PATH));
+        byte[] large = (new String(small, StandardCharsets.UTF_8).replace("</college>", "")
+                + "<!--" + " ".repeat(ParserStatePool.MAX_REUSED_BUFFER_SIZE) + "--></college>").getBytes(StandardCharsets.UTF_8);
+
+        // when
+        Map<String, Object> smallResult = parser.parseXml(small);
+        Map<String, Object> largeResult = parser.parseXml(large);
+        WeakReference<byte[]> smallDocument = new WeakReference<>(small);
+        WeakReference<byte[]> largeDocument = new WeakReference<>(large);
+        small = null;
+        large = null;
+
+        // then
+        Assertions.assertEquals(smallResult, largeResult);
+        Assertions.assertEquals(80000, smallResult.get("staff_basic_salary_sum"));
+        Assertions.assertEquals(List.of(20000, 25000, 35000), smallResult.get("basic_salaries"));
+        for (int i = 0; i < 50 && (smallDocument.get() != null || largeDocument.get() != null); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(smallDocument.get() == null, "small document is still reachable");
+        Assertions.assertTrue(largeDocument.get() == null, "large document is still reachable");
+    }
+
+    private double run(ExecutorService executor, int threads, Map<String, Object> expected) throws Exception {
+        long start = System.nanoTime();
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                int mismatches = 0;
+                for (int i = 0; i < PARSES_PER_THREAD; i++) {
+                    if (!expected.equals(vtdXmlParser.parseFile(XML_FILE_PATH))) {
+                        mismatches++;
+                    }
+                }
+                return mismatches;
+            }));
+        }
+        for (Future<Integer> future : futures) {
+            Assertions.assertEquals(0, future.get());
+        }
+        return threads * PARSES_PER_THREAD / ((System.nanoTime() - start) / 1e9);
+    }
+}
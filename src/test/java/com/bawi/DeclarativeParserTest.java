@@ -1,11 +1,16 @@
 package com.bawi;
 
 import com.bawi.VtdXmlParser.Entry;
+import com.bawi.parser.CustomFieldParser;
+import com.bawi.parser.FieldEvaluator;
 import com.bawi.parser.StringLengthParser;
 import com.bawi.parser.SumValuesParser;
+import com.ximpleware.VTDException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
@@ -79,4 +84,197 @@ public class DeclarativeParserTest {
         Assertions.assertEquals(101, result.get("staff_id_attr_sum"));
     }
 
+    @Test
+    public void shouldReuseCompiledMappingAcrossDocuments() {
+        // given
+        String xmlFilePath = "src/test/resources/college.xml";
+
+        // when
+        Map<String, Object> first = vtdXmlParser.parseFile(xmlFilePath);
+        Map<String, Object> second = vtdXmlParser.parseFile(xmlFilePath);
+
+        // then
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals(20000 + 25000 + 35000, second.get("staff_basic_salary_sum"));
+    }
+
+    @Test
+    public void shouldRejectInvalidXpathAtConstruction() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new VtdXmlParser(List.of(new Entry("invalid", "staff[["))));
+    }
+
+    @Test
+    public void shouldParseXmlByteSlice() {
+        // given
+        byte[] message = "HEADER<college id=\"123\"><staff id=\"101\" dep_name=\"Admin\"/></college>TRAILER"
+                .getBytes(StandardCharsets.UTF_8);
+
+        // when
+        Map<String, Object> result = vtdXmlParser.parseXml(message, "HEADER".length(), message.length - "HEADER".length() - "TRAILER".length());
+
+        // then
+        Assertions.assertEquals(123, result.get("college_id"));
+        Assertions.assertEquals("Admin", result.get("college_first_staff_dep_name"));
+    }
+
+    @Test
+    public void shouldParseXmlDirectByteBuffer() {
+        // given
+        byte[] xml = "<college id=\"123\"><staff id=\"101\" dep_name=\"Zürich\"/></college>".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(xml.length).put(xml).flip();
+
+        // when
+        Map<String, Object> result = vtdXmlParser.parseXml(buffer);
+
+        // then
+        Assertions.assertEquals("Zürich", result.get("college_first_staff_dep_name"));
+        Assertions.assertEquals(6, result.get("college_first_staff_dep_name_length"));
+        Assertions.assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void shouldEncodeXmlStringWithDeclaredCharset() {
+        // given
+        String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><college id=\"123\"><staff dep_name=\"Zürich\"/></college>";
+
+        // when
+        Map<String, Object> result = vtdXmlParser.parseXml(xml);
+
+        // then
+        Assertions.assertEquals("Zürich", result.get("college_first_staff_dep_name"));
+    }
+
+    @Test
+    public void shouldWalkSimplePathsLikeAutoPilot() {
+        // given
+        List<Entry> walked = List.of(
+                new Entry("id", "@id", Integer.class),
+                new Entry("description", "description"),
+                new Entry("staff", "staff", List.of(
+                        new Entry("id", "@id"),
+                        new Entry("employee_names", "employee/@name"),
+                        new Entry("employee_ids", "employee/@id"),
+                        new Entry("basic", "salary/basic", Integer.class),
+                        new Entry("country", "address/country"),
+                        new Entry("country_code", "address/country/@code"),
+                        new Entry("missing", "salary/missing"),
+                        new Entry("address", "address", List.of(new Entry("region", "region"))))),
+                new Entry("staff_descriptions", "staff/description"),
+                new Entry("staff_salary_sum", "staff/salary/basic", SumValuesParser.class));
+        List<Entry> evaluated = List.of(
+                new Entry("id", "./@id", Integer.class),
+                new Entry("description", "./description"),
+                new Entry("staff", "./staff", List.of(
+                        new Entry("id", "./@id"),
+                        new Entry("employee_names", "./employee/@name"),
+                        new Entry("employee_ids", "./employee/@id"),
+                        new Entry("basic", "./salary/basic", Integer.class),
+                        new Entry("country", "./address/country"),
+                        new Entry("country_code", "./address/country/@code"),
+                        new Entry("missing", "./salary/missing"),
+                        new Entry("address", "./address", List.of(new Entry("region", "./region"))))),
+                new Entry("staff_descriptions", "./staff/description"),
+                new Entry("staff_salary_sum", "staff/salary/basic", SumValuesParser.class));
+
+        // when
+        Map<String, Object> walkedResult = new VtdXmlParser(walked).parseFile("src/test/resources/college.xml");
+        Map<String, Object> evaluatedResult = new VtdXmlParser(evaluated).parseFile("src/test/resources/college.xml");
+
+        // then
+        Assertions.assertEquals(evaluatedResult, walkedResult);
+        Assertions.assertEquals(List.of("Admin Admin", "HR HR", "IT IT"), walkedResult.get("staff_descriptions"));
+    }
+
+    @Test
+    public void shouldWalkPositionalAndCustomPathsLikeAutoPilot() {
+        // given
+        List<Entry> walked = List.of(
+                new Entry("first_staff", "staff[1]", List.of(
+                        new Entry("id", "@id", Integer.class),
+                        new Entry("second_employee", "employee[2]/@name"))),
+                new Entry("first_staff_dep_name", "staff[1]/@dep_name"),
+                new Entry("first_staff_dep_name_length", "staff[1]/@dep_name", StringLengthParser.class),
+                new Entry("third_staff_third_employee", "staff[3]/employee[3]/@id"),
+                new Entry("fifth_staff", "staff[5]/@id"),
+                new Entry("staff_ids", "staff/@id"),
+                new Entry("staff_id_attr_sum", "staff/@id", SumValuesParser.class),
+                new Entry("staff_basic_salary_sum", "staff/salary/basic", SumValuesParser.class),
+                new Entry("second_staff_basic_salary_sum", "staff[2]/salary/basic", SumValuesParser.class),
+                new Entry("description_length", "description", StringLengthParser.class),
+                new Entry("missing_length", "missing/@id", StringLengthParser.class));
+        List<Entry> evaluated = List.of(
+                new Entry("first_staff", "./staff[1]", List.of(
+                        new Entry("id", "./@id", Integer.class),
+                        new Entry("second_employee", "./employee[2]/@name"))),
+                new Entry("first_staff_dep_name", "./staff[1]/@dep_name"),
+                new Entry("first_staff_dep_name_length", "./staff[1]/@dep_name", StringLengthParser.class),
+                new Entry("third_staff_third_employee", "./staff[3]/employee[3]/@id"),
+                new Entry("fifth_staff", "./staff[5]/@id"),
+                new Entry("staff_ids", "./staff/@id"),
+                new Entry("staff_id_attr_sum", "./staff/@id", SumValuesParser.class),
+                new Entry("staff_basic_salary_sum", "./staff/salary/basic", SumValuesParser.class),
+                new Entry("second_staff_basic_salary_sum", "./staff[2]/salary/basic", SumValuesParser.class),
+                new Entry("description_length", "./description", StringLengthParser.class),
+                new Entry("missing_length", "./missing/@id", StringLengthParser.class));
+
+        // when
+        Map<String, Object> walkedResult = new VtdXmlParser(walked).parseFile("src/test/resources/college.xml");
+        Map<String, Object> evaluatedResult = new VtdXmlParser(evaluated).parseFile("src/test/resources/college.xml");
+
+        // then
+        Assertions.assertEquals(evaluatedResult, walkedResult);
+        Assertions.assertEquals("Admin", walkedResult.get("first_staff_dep_name"));
+        Assertions.assertEquals(5, walkedResult.get("first_staff_dep_name_length"));
+        Assertions.assertEquals(25000, walkedResult.get("second_staff_basic_salary_sum"));
+        Assertions.assertNull(walkedResult.get("fifth_staff"));
+        Assertions.assertEquals(0, walkedResult.get("missing_length"));
+    }
+
+    @Test
+    public void shouldRestoreCursorAfterCustomParserStopsEarly() {
+        // given
+        List<Entry> mapping = List.of(
+                new Entry("first_basic", "./staff/salary/basic", FirstValueParser.class),
+                new Entry("description", "./description"));
+
+        // when
+        Map<String, Object> result = new VtdXmlParser(mapping).parseFile("src/test/resources/college.xml");
+
+        // then
+        Assertions.assertEquals("20000", result.get("first_basic"));
+        Assertions.assertEquals("US college", result.get("description"));
+    }
+
+    @Test
+    public void shouldRestoreCursorAfterAbsolutePaths() {
+        // given
+        List<Entry> mapping = List.of(
+                new Entry("employee_names", "//employee/@name"),
+                new Entry("staff_ids", "/college/staff/@id", Integer.class),
+                new Entry("first_staff", "/college/staff[1]", List.of(new Entry("id", "@id", Integer.class))),
+                new Entry("college_id", "@id", Integer.class),
+                new Entry("description", "./description"),
+                new Entry("staff_basic_salary_sum", "./staff/salary/basic", SumValuesParser.class));
+
+        // when
+        Map<String, Object> result = new VtdXmlParser(mapping).parseFile("src/test/resources/college.xml");
+
+        // then
+        Assertions.assertEquals(9, ((List<?>) result.get("employee_names")).size());
+        Assertions.assertEquals(List.of(101, 102, 103), result.get("staff_ids"));
+        Assertions.assertEquals(Map.of("id", 101), result.get("first_staff"));
+        Assertions.assertEquals(123, result.get("college_id"));
+        Assertions.assertEquals("US college", result.get("description"));
+        Assertions.assertEquals(20000 + 25000 + 35000, result.get("staff_basic_salary_sum"));
+    }
+
+    public static class FirstValueParser implements CustomFieldParser {
+
+        @Override
+        public Object parse(FieldEvaluator evaluator) throws VTDException {
+            int tokenIdx = evaluator.nextValue();
+            return tokenIdx == -1 ? null : evaluator.toString(tokenIdx);
+        }
+    }
 }
@@ -0,0 +1,97 @@
+package com.bawi;
+
+import com.bawi.AbstractVtdXmlParser.Options;
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.metrics.ParserStatistics;
+import com.bawi.parser.SumValuesParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class LazyResultTest {
+
+    private final List<Entry> mapping = List.of(
+            new Entry("college_id", "@id", Integer.class),
+            new Entry("staff", "staff", List.of(
+                    new Entry("id", "@id", Long.class),
+                    new Entry("employee_names", "employee/@name"))),
+            new Entry("first_department", "staff[1]/@dep_name"),
+            new Entry("staff_basic_salary_sum", "staff/salary/basic", SumValuesParser.class),
+            new Entry("missing", "missing"));
+
+    private final ParserStatistics statistics = new ParserStatistics();
+    private final VtdXmlParser parser = new VtdXmlParser(mapping,
+            Options.defaults().withMaxIdleStates(2).withMetrics(statistics));
+
+    @Test
+    public void shouldEvaluateOnlyReadFields() throws IOException {
+        // given
+        byte[] xml = Files.readAllBytes(Path.of("src/test/resources/college.xml"));
+
+        // when
+        try (LazyResult result = parser.parseLazy(xml)) {
+
+            // then
+            Assertions.assertEquals(Set.of("college_id", "staff", "first_department", "staff_basic_salary_sum", "missing"), result.keySet());
+            Assertions.assertTrue(result.containsKey("missing"));
+            Assertions.assertEquals("Admin", result.get("first_department"));
+            Assertions.assertEquals("Admin", result.get("first_department"));
+            Assertions.assertTrue(result.isEvaluated("first_department"));
+            Assertions.assertFalse(result.isEvaluated("staff"));
+            Assertions.assertEquals(Map.of("first_department", 1L), statistics.getEntryEvaluationCounts());
+        }
+    }
+
+    @Test
+    public void shouldEqualEagerResult() throws IOException {
+        // given
+        byte[] xml = Files.readAllBytes(Path.of("src/test/resources/college.xml"));
+
+        // when
+        try (LazyResult result = parser.parseLazy(xml)) {
+
+            // then
+            Assertions.assertEquals(parser.parseXml(xml), result);
+            Assertions.assertEquals(result, parser.parseXml(xml));
+            Assertions.assertEquals(20000 + 25000 + 35000, result.get("staff_basic_salary_sum"));
+            Assertions.assertNull(result.get("missing"));
+        }
+    }
+
+    @Test
+    public void shouldDetachIntoEagerCopy() throws IOException {
+        // given
+        byte[] xml = Files.readAllBytes(Path.of("src/test/resources/college.xml"));
+        LazyResult result = parser.parseLazy(xml);
+        Object department = result.get("first_department");
+
+        // when
+        Map<String, Object> detached = result.detach();
+
+        // then
+        Assertions.assertEquals(parser.parseXml(xml), detached);
+        Assertions.assertEquals(department, result.get("first_department"));
+        Assertions.assertEquals(detached.get("staff"), result.get("staff"));
+        result.close();
+    }
+
+    @Test
+    public void shouldRejectFieldsNotReadBeforeClose() {
+        // given
+        LazyResult result = parser.parseLazy("<college id=\"5\"><staff id=\"1\"/></college>".getBytes());
+        Assertions.assertEquals(5, result.get("college_id"));
+
+        // when
+        result.close();
+
+        // then
+        Assertions.assertEquals(5, result.get("college_id"));
+        Assertions.assertThrows(IllegalStateException.class, () -> result.get("staff"));
+    }
+}
@@ -0,0 +1,67 @@
+package com.bawi;
+
+import com.bawi.AbstractVtdXmlParser.Options;
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.parser.StringLengthParser;
+import com.bawi.parser.SumValuesParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+public class MappedFileParserTest {
+
+    private static final Path XML_FILE_PATH = Path.of("src/test/resources/college.xml");
+
+    private final List<Entry> mapping = List.of(
+            new Entry("college_id", "@id", Integer.class),
+            new Entry("staff", "staff[1]", null,
+                    List.of(
+                            new Entry("employee_names", "employee/@name"),
+                            new Entry("id", "@id", Integer.class),
+                            new Entry("basic_salary", "salary/basic", Integer.class),
+                            new Entry("address", "address", null,
+                                    List.of(new Entry("country_code", "country/@code"))))),
+            new Entry("college_first_staff_dep_name_length", "staff[1]/@dep_name", StringLengthParser.class),
+            new Entry("staff_basic_salary_sum", "staff/salary/basic", SumValuesParser.class),
+            new Entry("staff_id_attr_sum", "staff/@id", SumValuesParser.class)
+    );
+
+    @Test
+    public void shouldParseMappedFileChannel() throws IOException {
+        // given
+        VtdXmlParser vtdXmlParser = new VtdXmlParser(mapping);
+
+        // when
+        Map<String, Object> result;
+        try (FileChannel channel = FileChannel.open(XML_FILE_PATH, StandardOpenOption.READ)) {
+            result = vtdXmlParser.parseFile(channel);
+        }
+
+        // then
+        Assertions.assertEquals(123, result.get("college_id"));
+        Assertions.assertEquals(20000 + 25000 + 35000, result.get("staff_basic_salary_sum"));
+    }
+
+    @Test
+    public void shouldApplySameMappingAboveHugeFileThreshold() {
+        // given
+        VtdXmlParser vtdXmlParser = new VtdXmlParser(mapping);
+        VtdXmlParser hugeVtdXmlParser = new VtdXmlParser(mapping, Options.defaults().withMaxIdleStates(1).withHugeFileThreshold(0));
+
+        // when
+        Map<String, Object> result = vtdXmlParser.parseFile(XML_FILE_PATH);
+        Map<String, Object> hugeResult = hugeVtdXmlParser.parseFile(XML_FILE_PATH);
+
+        // then
+        Assertions.assertEquals(result, hugeResult);
+        Assertions.assertEquals(5, hugeResult.get("college_first_staff_dep_name_length"));
+        Assertions.assertEquals(101 + 102 + 103, hugeResult.get("staff_id_attr_sum"));
+        Assertions.assertEquals("US", ((Map<?, ?>) ((Map<?, ?>) hugeResult.get("staff")).get("address")).get("country_code"));
+    }
+}
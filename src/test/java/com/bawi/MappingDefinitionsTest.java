@@ -0,0 +1,104 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.parser.SumValuesParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+public class MappingDefinitionsTest {
+
+    private static final String YAML = String.join("\n",
+            "- field: college_id",
+            "  xpath: \"@id\"",
+            "  type: Integer",
+            "- field: staff",
+            "  xpath: staff[1]",
+            "  children:",
+            "    - { field: id, xpath: \"@id\", type: Long }",
+            "    - field: employee_names",
+            "      xpath: employee/@name",
+            "- field: staff_id_attr_sum",
+            "  xpath: staff/@id",
+            "  type: com.bawi.parser.SumValuesParser");
+
+    private static final String JSON = "[{\"field\": \"college_id\", \"xpath\": \"@id\", \"type\": \"Integer\"},"
+            + " {\"field\": \"staff\", \"xpath\": \"staff[1]\", \"children\": ["
+            + "{\"field\": \"id\", \"xpath\": \"@id\", \"type\": \"Long\"}, {\"field\": \"employee_names\", \"xpath\": \"employee/@name\"}]},"
+            + " {\"field\": \"staff_id_attr_sum\", \"xpath\": \"staff/@id\", \"type\": \"com.bawi.parser.SumValuesParser\"}]";
+
+    private final List<Entry> mapping = List.of(
+            new Entry("college_id", "@id", Integer.class),
+            new Entry("staff", "staff[1]", List.of(
+                    new Entry("id", "@id", Long.class),
+                    new Entry("employee_names", "employee/@name"))),
+            new Entry("staff_id_attr_sum", "staff/@id", SumValuesParser.class));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldLoadYamlAndJsonDefinitionsLikeJavaMapping() throws IOException {
+        // given
+        Path yaml = Files.writeString(directory.resolve("college.yaml"), YAML);
+        Path json = Files.writeString(directory.resolve("college.json"), JSON);
+
+        // when
+        List<Entry> fromYaml = MappingDefinitions.load(yaml);
+        List<Entry> fromJson = MappingDefinitions.load(json);
+
+        // then
+        Assertions.assertEquals(mapping, fromYaml);
+        Assertions.assertEquals(mapping, fromJson);
+        Assertions.assertEquals(new VtdXmlParser(mapping).parseFile("src/test/resources/college.xml"),
+                new VtdXmlParser(fromYaml).parseFile("src/test/resources/college.xml"));
+    }
+
+    @Test
+    public void shouldRejectInvalidDefinitionsAtLoadTime() {
+        Map<String, String> invalid = Map.of(
+                "- { field: id, xpath: \"@id\", type: Integr }", "at id: unknown type Integr",
+                "- { field: id, xpath: \"@id\", type: java.util.ArrayList }", "at id: java.util.ArrayList is neither",
+                "- { field: id, xpath: \"@id\", typ: Long }", "at [0]: unknown key typ",
+                "- { field: staff, xpath: staff, children: [ { field: id } ] }", "at staff/id: missing xpath",
+                "- { field: id, xpath: \"staff[\" }", "Invalid xpath staff[",
+                "- { field: id, xpath: \"@id\", type: com.bawi.MappingDefinitionsTest$NoDefaultConstructorParser }", "Missing no-arg constructor",
+                "field: id", "at top level: expected a list of entries",
+                "- [field, id]", "expected an entry");
+        invalid.forEach((definition, message) -> {
+            IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> MappingDefinitions.load(new StringReader(definition), "feed.yaml"), definition);
+            Assertions.assertTrue(e.getMessage().startsWith("Invalid mapping feed.yaml"), e.getMessage());
+            Assertions.assertTrue(e.getMessage().contains(message), e.getMessage());
+        });
+    }
+
+    @Test
+    public void shouldLoadDirectoryAndReportAllInvalidFiles() throws IOException {
+        // given
+        Files.writeString(directory.resolve("college.yml"), YAML);
+        Files.writeString(directory.resolve("notes.txt"), "not a mapping");
+
+        // when
+        Map<String, List<Entry>> mappings = MappingDefinitions.loadDirectory(directory);
+        Files.writeString(directory.resolve("broken.json"), "[{\"field\": \"id\"}]");
+        Files.writeString(directory.resolve("typo.yaml"), "- { field: id, xpath: \"@id\", type: Lng }");
+        IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class, () -> MappingDefinitions.loadDirectory(directory));
+
+        // then
+        Assertions.assertEquals(Map.of("college", mapping), mappings);
+        Assertions.assertEquals(2, e.getSuppressed().length);
+    }
+
+    public static class NoDefaultConstructorParser extends SumValuesParser {
+        public NoDefaultConstructorParser(int ignored) {
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.parser.StringLengthParser;
+import com.bawi.parser.SumValuesParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+public class OffHeapParserTest {
+
+    private static final Path XML_FILE_PATH = Path.of("src/test/resources/college.xml");
+
+    private final VtdXmlParser vtdXmlParser = new VtdXmlParser(List.of(
+            new Entry("college_id", "@id", Integer.class),
+            new Entry("staff", "staff", List.of(
+                    new Entry("id", "@id", Long.class),
+                    new Entry("employee_names", "employee/@name"),
+                    new Entry("basic_salary", "salary/basic", Double.class))),
+            new Entry("college_first_staff_dep_name_length", "staff[1]/@dep_name", StringLengthParser.class),
+            new Entry("staff_basic_salary_sum", "staff/salary/basic", SumValuesParser.class)));
+
+    @Test
+    public void shouldParseDocumentSpanningManyArenaBlocks() throws IOException {
+        // given
+        byte[] xml = Files.readAllBytes(XML_FILE_PATH);
+        try (OffHeapBufferArena arena = new OffHeapBufferArena(200, 1 << 20)) {
+
+            // when
+            Map<String, Object> result = vtdXmlParser.parseOffHeap(new ByteArrayInputStream(xml), arena);
+
+            // then
+            Assertions.assertEquals(vtdXmlParser.parseXml(xml), result);
+            Assertions.assertEquals(20000 + 25000 + 35000, result.get("staff_basic_salary_sum"));
+            Assertions.assertTrue(arena.allocatedBytes() >= xml.length);
+            Assertions.assertEquals(arena.allocatedBytes(), arena.pooledBytes());
+        }
+    }
+
+    @Test
+    public void shouldReuseArenaBlocksAcrossDocuments() throws IOException {
+        // given
+        try (OffHeapBufferArena arena = new OffHeapBufferArena(1024, 1 << 20)) {
+            Map<String, Object> first;
+            try (InputStream xml = Files.newInputStream(XML_FILE_PATH)) {
+                first = vtdXmlParser.parseOffHeap(xml, arena);
+            }
+            long allocated = arena.allocatedBytes();
+
+            // when
+            Map<String, Object> second;
+            try (InputStream xml = Files.newInputStream(XML_FILE_PATH)) {
+                second = vtdXmlParser.parseOffHeap(xml, arena);
+            }
+
+            // then
+            Assertions.assertEquals(first, second);
+            Assertions.assertEquals(allocated, arena.allocatedBytes());
+        }
+    }
+
+    @Test
+    public void shouldParseDirectBufferInPlace() throws IOException {
+        // given
+        byte[] xml = Files.readAllBytes(XML_FILE_PATH);
+        ByteBuffer direct = ByteBuffer.allocateDirect(xml.length + 10).position(10);
+        direct.put(xml).position(10);
+
+        // when
+        Map<String, Object> result = vtdXmlParser.parseOffHeap(direct);
+
+        // then
+        Assertions.assertEquals(vtdXmlParser.parseXml(xml), result);
+        Assertions.assertEquals(10, direct.position());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> vtdXmlParser.parseOffHeap(ByteBuffer.wrap(xml)));
+    }
+
+    @Test
+    public void shouldNotPinDirectBufferInIdleState() throws Exception {
+        // given
+        byte[] xml = Files.readAllBytes(XML_FILE_PATH);
+        ByteBuffer direct = ByteBuffer.allocateDirect(xml.length).put(xml).flip();
+        Map<String, Object> first = vtdXmlParser.parseOffHeap(direct);
+
+        // when
+        Map<String, Object> second = vtdXmlParser.parseOffHeap(direct);
+        WeakReference<ByteBuffer> document = new WeakReference<>(direct);
+        direct = null;
+
+        // then
+        Assertions.assertEquals(first, second);
+        for (int i = 0; i < 50 && document.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(document.get() == null, "direct buffer is still reachable");
+    }
+
+    @Test
+    public void shouldRejectDocumentsAfterArenaIsClosed() {
+        // given
+        OffHeapBufferArena arena = new OffHeapBufferArena(64, 1024);
+        vtdXmlParser.parseOffHeap(new ByteArrayInputStream("<college id=\"1\"/>".getBytes()), arena);
+
+        // when
+        arena.close();
+
+        // then
+        Assertions.assertEquals(0, arena.pooledBytes());
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> vtdXmlParser.parseOffHeap(new ByteArrayInputStream("<college id=\"1\"/>".getBytes()), arena));
+    }
+}
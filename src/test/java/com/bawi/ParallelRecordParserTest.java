@@ -0,0 +1,135 @@
+package com.bawi;
+
+import com.bawi.AbstractVtdXmlParser.Options;
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.parser.SumValuesParser;
+import com.ximpleware.AutoPilot;
+import com.ximpleware.VTDGen;
+import com.ximpleware.VTDNav;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelRecordParserTest {
+
+    private static final int RECORDS = 2_000;
+
+    private static final ForkJoinPool RECORD_POOL = new ForkJoinPool(4);
+
+    private final List<Entry> mapping = List.of(
+            new Entry("batch", "@batch", Integer.class),
+            new Entry("orders", "order", List.of(
+                    new Entry("id", "@id", Integer.class),
+                    new Entry("customer", "customer/name"),
+                    new Entry("amounts", "line/@amount", Double.class),
+                    new Entry("amount_sum", "line/@amount", SumValuesParser.class))),
+            new Entry("large_orders", "order[line/@amount > 10]", List.of(
+                    new Entry("id", "@id", Integer.class))),
+            new Entry("customers", "order/customer/name")
+    );
+
+    @AfterAll
+    public static void shutdownPool() {
+        RECORD_POOL.shutdown();
+    }
+
+    @Test
+    public void shouldEvaluateRecordsInParallelInDocumentOrder() {
+        // given
+        String xml = orders();
+        VtdXmlParser serialParser = new VtdXmlParser(mapping);
+        VtdXmlParser parallelParser = new VtdXmlParser(mapping, Options.defaults().withRecordPool(RECORD_POOL));
+
+        // when
+        Map<String, Object> serialResult = serialParser.parseXml(xml);
+        Map<String, Object> parallelResult = parallelParser.parseXml(xml);
+
+        // then
+        Assertions.assertEquals(serialResult, parallelResult);
+        List<?> orders = (List<?>) parallelResult.get("orders");
+        Assertions.assertEquals(RECORDS, orders.size());
+        for (int i = 0; i < RECORDS; i++) {
+            Assertions.assertEquals(i, ((Map<?, ?>) orders.get(i)).get("id"));
+        }
+    }
+
+    @Test
+    public void shouldEvaluateHugeDocumentRecordsInParallel(@TempDir Path dir) throws IOException {
+        // given
+        Path xmlFile = Files.writeString(dir.resolve("orders.xml"), orders(), StandardCharsets.UTF_8);
+        VtdXmlParser serialParser = new VtdXmlParser(mapping);
+        VtdXmlParser parallelHugeParser = new VtdXmlParser(mapping,
+                Options.defaults().withHugeFileThreshold(0).withRecordPool(RECORD_POOL));
+
+        // when
+        Map<String, Object> serialResult = serialParser.parseFile(xmlFile);
+        Map<String, Object> parallelResult = parallelHugeParser.parseFile(xmlFile);
+
+        // then
+        Assertions.assertEquals(serialResult, parallelResult);
+    }
+
+    @Test
+    public void shouldEvaluateRecordsInParallelToRecords() {
+        // given
+        String xml = orders();
+        VtdXmlRecordParser parallelParser = new VtdXmlRecordParser(mapping, Options.defaults().withRecordPool(RECORD_POOL));
+
+        // when
+        Record result = parallelParser.parseXml(xml);
+
+        // then
+        Assertions.assertEquals(new VtdXmlParser(mapping).parseXml(xml), result.toMap());
+    }
+
+    @Test
+    public void shouldKeepRecordsBeforeFirstFailingRecordLikeSerialEvaluation() throws Exception {
+        // given
+        ExtractionPlan plan = ExtractionPlan.compile(mapping);
+        ParallelRecords<Map<String, Object>> parallel = new ParallelRecords<>(plan,
+                RECORD_POOL, new ParserStatePool<>(plan, MapResultWriter::new, 4));
+        VTDGen vtdGen = new VTDGen();
+        vtdGen.setDoc(orders().getBytes(StandardCharsets.UTF_8));
+        vtdGen.parse(false);
+        VTDNav nav = vtdGen.getNav();
+        AutoPilot ap = new AutoPilot(nav);
+        ap.selectXPath("order");
+        int[] elements = new int[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            ap.evalXPath();
+            elements[i] = nav.getCurrentIndex();
+        }
+        elements[RECORDS / 2] = -1;
+        nav.toElement(VTDNav.ROOT);
+
+        // when
+        List<Map<String, Object>> results = parallel.evaluate(nav, plan.nodes().get(1), elements);
+
+        // then
+        Assertions.assertEquals(RECORDS / 2, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            Assertions.assertEquals(i, results.get(i).get("id"));
+        }
+    }
+
+    private static String orders() {
+        StringBuilder xml = new StringBuilder("<orders batch=\"7\">");
+        for (int i = 0; i < RECORDS; i++) {
+            xml.append("<order id=\"").append(i).append("\"><customer><name>customer ").append(i % 97).append("</name></customer>");
+            for (int line = 0; line < i % 4; line++) {
+                xml.append("<line amount=\"").append(line * 5 + i % 3).append("\"/>");
+            }
+            xml.append("</order>");
+        }
+        return xml.append("</orders>").toString();
+    }
+}
@@ -0,0 +1,204 @@
+package com.bawi;
+
+import com.bawi.AbstractVtdXmlParser.Options;
+import com.bawi.VtdXmlParser.Entry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class ParsePipelineTest {
+
+    private static final int DOCUMENTS = 2000;
+
+    private final VtdXmlRecordParser recordParser = new VtdXmlRecordParser(List.of(
+            new Entry("id", "@id", Integer.class),
+            new Entry("amounts", "line/@amount", Double.class)), Options.defaults().withMaxIdleStates(16));
+
+    private final List<byte[]> documents = IntStream.range(0, DOCUMENTS)
+            .mapToObj(i -> ("<order id=\"" + i + "\"><line amount=\"" + i + ".5\"/><line amount=\"1\"/></order>").getBytes(StandardCharsets.UTF_8))
+            .collect(Collectors.toList());
+
+    @Test
+    public void shouldParseAllDocumentsInOrderOnPlatformThreads() {
+        // given
+        ExecutorService tokenizer = Executors.newFixedThreadPool(2);
+        ExecutorService mapper = Executors.newFixedThreadPool(2);
+        try {
+            // when
+            List<Record> results = recordParser.pipeline(tokenizer, mapper, 16).parseAll(documents).collect(Collectors.toList());
+
+            // then
+            Assertions.assertEquals(DOCUMENTS, results.size());
+            for (int i = 0; i < DOCUMENTS; i++) {
+                Assertions.assertEquals(i, results.get(i).getInt(0));
+                Assertions.assertEquals(i + 0.5, results.get(i).getDouble(1, 0));
+            }
+        } finally {
+            tokenizer.shutdown();
+            mapper.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldParseAllDocumentsOnVirtualThreadsLikeParseXml() {
+        // when
+        List<Record> results = recordParser.pipeline(64).parseAll(documents).collect(Collectors.toList());
+
+        // then
+        for (int i = 0; i < DOCUMENTS; i += 97) {
+            Assertions.assertEquals(recordParser.parseXml(documents.get(i)), results.get(i));
+        }
+    }
+
+    @Test
+    public void shouldFailAtPositionOfMalformedDocument() {
+        // given
+        List<byte[]> batch = new ArrayList<>(documents.subList(0, 10));
+        batch.set(5, "<order id=\"5\">".getBytes(StandardCharsets.UTF_8));
+        List<Record> results = new ArrayList<>();
+
+        // when
+        Assertions.assertThrows(RuntimeException.class, () -> recordParser.pipeline(4).parseAll(batch).forEach(results::add));
+
+        // then
+        Assertions.assertEquals(5, results.size());
+    }
+
+    @Test
+    public void shouldPublishResultsInOrderWithBackPressure() throws Exception {
+        // given
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Flow.Publisher<Map<String, Object>> results = new VtdXmlParser(List.of(new Entry("id", "@id", Integer.class)))
+                .pipeline(executor, 8)
+                .publisher(subscriber -> {
+                    SubmissionPublisher<byte[]> source = new SubmissionPublisher<>(executor, 8);
+                    source.subscribe(subscriber);
+                    CompletableFuture.runAsync(() -> {
+                        documents.forEach(source::submit);
+                        source.close();
+                    });
+                });
+        List<Object> ids = new ArrayList<>();
+        CompletableFuture<Void> completed = new CompletableFuture<>();
+
+        // when
+        results.subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Map<String, Object> item) {
+                ids.add(item.get("id"));
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                completed.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completed.complete(null);
+            }
+        });
+
+        // then
+        try {
+            completed.get(30, TimeUnit.SECONDS);
+            Assertions.assertEquals(IntStream.range(0, DOCUMENTS).boxed().collect(Collectors.toList()), ids);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldRequestDocumentsOnlyForSubscriberDemandWithoutBlockingExecutor() throws Exception {
+        // given
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicLong requested = new AtomicLong();
+        Flow.Publisher<byte[]> source = subscriber -> subscriber.onSubscribe(new Flow.Subscription() {
+            private final Iterator<byte[]> input = documents.iterator();
+
+            @Override
+            public void request(long n) {
+                requested.addAndGet(n);
+                for (long i = 0; i < n && input.hasNext(); i++) {
+                    subscriber.onNext(input.next());
+                }
+                if (!input.hasNext()) {
+                    subscriber.onComplete();
+                }
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        List<Object> ids = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> firstResults = new CompletableFuture<>();
+        CompletableFuture<Void> completed = new CompletableFuture<>();
+        AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+
+        // when
+        new VtdXmlParser(List.of(new Entry("id", "@id", Integer.class))).pipeline(executor, 8).publisher(source)
+                .subscribe(new Flow.Subscriber<>() {
+                    @Override
+                    public void onSubscribe(Flow.Subscription s) {
+                        subscription.set(s);
+                        s.request(3);
+                    }
+
+                    @Override
+                    public void onNext(Map<String, Object> item) {
+                        ids.add(item.get("id"));
+                        if (ids.size() == 3) {
+                            executor.execute(() -> firstResults.complete(null));
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        completed.completeExceptionally(throwable);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        completed.complete(null);
+                    }
+                });
+
+        // then
+        try {
+            firstResults.get(30, TimeUnit.SECONDS);
+            Assertions.assertEquals(List.of(0, 1, 2), ids);
+            Assertions.assertEquals(3, requested.get());
+            subscription.get().request(Long.MAX_VALUE);
+            completed.get(30, TimeUnit.SECONDS);
+            Assertions.assertEquals(IntStream.range(0, DOCUMENTS).boxed().collect(Collectors.toList()), ids);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.bawi;
+
+import com.bawi.AbstractVtdXmlParser.Options;
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.metrics.MicrometerParserMetrics;
+import com.bawi.metrics.ParserStatistics;
+import com.bawi.parser.CustomFieldParser;
+import com.bawi.parser.FieldEvaluator;
+import com.bawi.parser.SumValuesParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+public class ParserMetricsTest {
+
+    public static class FailingParser implements CustomFieldParser {
+        @Override
+        public Object parse(FieldEvaluator evaluator) {
+            throw new IllegalStateException("failing " + evaluator.field());
+        }
+    }
+
+    private final List<Entry> mapping = List.of(
+            new Entry("college_id", "@id", Integer.class),
+            new Entry("staff", "staff", List.of(
+                    new Entry("id", "@id", Long.class),
+                    new Entry("employee_names", "employee/@name"))),
+            new Entry("staff_basic_salary_sum", "staff/salary/basic", SumValuesParser.class),
+            new Entry("failing", "staff", FailingParser.class)
+    );
+
+    @Test
+    public void shouldCountDocumentsAndEntries() {
+        // given
+        ParserStatistics statistics = new ParserStatistics();
+        VtdXmlParser vtdXmlParser = new VtdXmlParser(mapping, Options.defaults().withMaxIdleStates(1).withMetrics(statistics));
+
+        // when
+        vtdXmlParser.parseFile("src/test/resources/college.xml");
+        vtdXmlParser.parseFile("src/test/resources/college.xml");
+
+        // then
+        Assertions.assertEquals(2, statistics.getDocumentCount());
+        Assertions.assertTrue(statistics.getBytesParsed() > 0);
+        Assertions.assertEquals(2, statistics.getEntryEvaluationCounts().get("staff"));
+        Assertions.assertEquals(6, statistics.getEntryEvaluationCounts().get("staff/id"));
+        Assertions.assertEquals(Map.of(
+                "college_id", 2L,
+                "staff", 6L,
+                "staff/id", 6L,
+                "staff/employee_names", 18L,
+                "staff_basic_salary_sum", 2L,
+                "failing", 0L), statistics.getEntryMatchCounts());
+        Assertions.assertEquals(2, statistics.getEntryFailureCounts().get("failing"));
+        Assertions.assertEquals(0, statistics.getEntryFailureCounts().get("staff"));
+        Assertions.assertTrue(statistics.entryTimePercentile("staff", 50) >= statistics.entryTimePercentile("staff/id", 50));
+    }
+
+    @Test
+    public void shouldCountHugeDocumentsAndParseFailures() {
+        // given
+        ParserStatistics statistics = new ParserStatistics();
+        VtdXmlRecordParser recordParser = new VtdXmlRecordParser(mapping.subList(0, 2),
+                Options.defaults().withMaxIdleStates(1).withHugeFileThreshold(0).withMetrics(statistics));
+
+        // when
+        recordParser.parseFile("src/test/resources/college.xml");
+        Assertions.assertThrows(RuntimeException.class, () -> recordParser.parseXml("<college><staff></college>"));
+
+        // then
+        Assertions.assertEquals(1, statistics.getDocumentCount());
+        Assertions.assertEquals(1, statistics.getDocumentFailureCount());
+        Assertions.assertEquals(3L, statistics.getEntryMatchCounts().get("staff"));
+        statistics.reset();
+        Assertions.assertEquals(0, statistics.getDocumentCount());
+        Assertions.assertTrue(statistics.getEntryMatchCounts().isEmpty());
+    }
+
+    @Test
+    public void shouldPublishToMicrometerRegistry() {
+        // given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        VtdXmlParser vtdXmlParser = new VtdXmlParser(mapping,
+                Options.defaults().withMaxIdleStates(1).withMetrics(new MicrometerParserMetrics(registry, "college")));
+
+        // when
+        vtdXmlParser.parseFile("src/test/resources/college.xml");
+
+        // then
+        Assertions.assertEquals(1, registry.get("vtdxml.parse").tag("parser", "college").timer().count());
+        Assertions.assertEquals(1, registry.get("vtdxml.mapping").timer().count());
+        Assertions.assertEquals(3, registry.get("vtdxml.entry").tag("entry", "staff/employee_names").timer().count());
+        Assertions.assertEquals(9, registry.get("vtdxml.entry.matches").tag("entry", "staff/employee_names").summary().totalAmount());
+        Assertions.assertEquals(1, registry.get("vtdxml.entry.failures").tag("entry", "failing").counter().count());
+    }
+
+    @Test
+    public void shouldExposeStatisticsOverJmx() throws Exception {
+        // given
+        ParserStatistics statistics = new ParserStatistics();
+        VtdXmlParser vtdXmlParser = new VtdXmlParser(mapping, Options.defaults().withMaxIdleStates(1).withMetrics(statistics));
+        ObjectName name = statistics.registerMBean("college");
+
+        try {
+            // when
+            vtdXmlParser.parseFile("src/test/resources/college.xml");
+
+            // then
+            Assertions.assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "DocumentCount"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.parser.DoubleFieldParser;
+import com.bawi.parser.FieldEvaluator;
+import com.bawi.parser.StringLengthParser;
+import com.bawi.parser.SumValuesParser;
+import com.ximpleware.VTDException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RecordParserTest {
+
+    private final List<Entry> mapping = List.of(
+            new Entry("college_id", "@id", Integer.class),
+            new Entry("college_description", "description"),
+            new Entry("staff", "staff", List.of(
+                    new Entry("id", "@id", Long.class),
+                    new Entry("employee_names", "employee/@name"),
+                    new Entry("basic_salary", "salary/basic", Double.class),
+                    new Entry("country_code", "address/country/@code"))),
+            new Entry("staff_basic_salary_sum", "staff/salary/basic", SumValuesParser.class)
+    );
+
+    @Test
+    public void shouldParseXmlFileToRecord() {
+        // given
+        VtdXmlRecordParser recordParser = new VtdXmlRecordParser(mapping);
+        RecordSchema schema = recordParser.schema();
+        int collegeId = schema.indexOf("college_id");
+        int staff = schema.indexOf("staff");
+        RecordSchema staffSchema = schema.child(staff);
+        int staffId = staffSchema.indexOf("id");
+        int employeeNames = staffSchema.indexOf("employee_names");
+        int basicSalary = staffSchema.indexOf("basic_salary");
+        int countryCode = staffSchema.indexOf("country_code");
+
+        // when
+        Record result = recordParser.parseFile("src/test/resources/college.xml");
+
+        // then
+        Assertions.assertEquals(List.of("college_id", "college_description", "staff", "staff_basic_salary_sum"), schema.names());
+        Assertions.assertEquals(RecordSchema.FieldType.INT, schema.type(collegeId));
+        Assertions.assertEquals(123, result.getInt(collegeId));
+        Assertions.assertEquals("US college", result.getString(schema.indexOf("college_description")));
+        Assertions.assertEquals(3, result.size(staff));
+        Assertions.assertEquals(102L, result.getRecord(staff, 1).getLong(staffId));
+        Assertions.assertEquals(35000.0, result.getRecord(staff, 2).getDouble(basicSalary));
+        Assertions.assertEquals(3, result.getRecord(staff, 0).size(employeeNames));
+        Assertions.assertEquals("amit", result.getRecord(staff, 0).getString(employeeNames, 1));
+        Assertions.assertEquals("US", result.getRecord(staff, 0).getString(countryCode));
+        Assertions.assertTrue(result.getRecord(staff, 1).isNull(countryCode));
+        Assertions.assertEquals(80000, result.get("staff_basic_salary_sum"));
+    }
+
+    @Test
+    public void shouldConvertRecordToSameMapAsVtdXmlParser() {
+        // given
+        VtdXmlRecordParser recordParser = new VtdXmlRecordParser(mapping);
+        VtdXmlParser mapParser = new VtdXmlParser(mapping);
+
+        // when
+        Record record = recordParser.parseFile("src/test/resources/college.xml");
+
+        // then
+        Assertions.assertEquals(mapParser.parseFile("src/test/resources/college.xml"), record.toMap());
+    }
+
+    @Test
+    public void shouldStorePrimitiveTypesWithoutBoxing() {
+        // given
+        VtdXmlRecordParser recordParser = new VtdXmlRecordParser(List.of(
+                new Entry("active", "@active", Boolean.class),
+                new Entry("created", "created", Instant.class),
+                new Entry("amounts", "amount", Double.class)));
+        String xml = "<payment active=\"true\"><created>2024-03-01T00:00Z</created><amount>1.5</amount><amount>2</amount></payment>";
+
+        // when
+        Record first = recordParser.parseXml(xml);
+        Record second = recordParser.parseXml(xml.replace("true", "false"));
+
+        // then
+        Assertions.assertTrue(first.getBoolean(0));
+        Assertions.assertFalse(second.getBoolean(0));
+        Assertions.assertEquals(Instant.parse("2024-03-01T00:00:00Z").toEpochMilli(), first.getLong(1));
+        Assertions.assertEquals(Instant.parse("2024-03-01T00:00:00Z"), first.get(1));
+        Assertions.assertEquals(List.of(1.5, 2.0), first.get("amounts"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> first.getDouble(2, 2));
+    }
+
+    @Test
+    public void shouldRejectAccessorsNotMatchingFieldType() {
+        // given
+        VtdXmlRecordParser recordParser = new VtdXmlRecordParser(List.of(
+                new Entry("name", "@name"),
+                new Entry("id", "@id", Integer.class),
+                new Entry("x", "@x", Integer.class),
+                new Entry("staff", "staff", List.of(new Entry("id", "@id", Integer.class)))));
+
+        // when
+        Record record = recordParser.parseXml("<college name=\"abc\" id=\"5\" x=\"7\"><staff id=\"1\"/></college>");
+
+        // then
+        ClassCastException e = Assertions.assertThrows(ClassCastException.class, () -> record.getLong(0));
+        Assertions.assertEquals("Field name of type STRING cannot be read as long", e.getMessage());
+        Assertions.assertThrows(ClassCastException.class, () -> record.getInt(0));
+        Assertions.assertThrows(ClassCastException.class, () -> record.getDouble(0));
+        Assertions.assertThrows(ClassCastException.class, () -> record.getString(2));
+        Assertions.assertThrows(ClassCastException.class, () -> record.getRecord(1));
+        Assertions.assertThrows(ClassCastException.class, () -> record.getLong(3));
+        Assertions.assertThrows(ClassCastException.class, () -> record.getString(3));
+        Assertions.assertEquals("abc", record.getString(0));
+        Assertions.assertEquals(7.0, record.getDouble(2));
+        Assertions.assertEquals(1, record.getRecord(3).getInt(0));
+    }
+
+    public static class AverageParser implements DoubleFieldParser {
+        static final AtomicInteger INSTANCES = new AtomicInteger();
+
+        public AverageParser() {
+            INSTANCES.incrementAndGet();
+        }
+
+        @Override
+        public double parseDouble(FieldEvaluator evaluator) throws VTDException {
+            double sum = 0;
+            int count = 0;
+            int tokenIdx;
+            while ((tokenIdx = evaluator.nextValue()) != -1) {
+                sum += evaluator.parseDouble(tokenIdx);
+                count++;
+            }
+            return count == 0 ? Double.NaN : sum / count;
+        }
+    }
+
+    @Test
+    public void shouldCreateCustomParsersOnceAndStorePrimitiveResults() {
+        // given
+        int instances = AverageParser.INSTANCES.get();
+        VtdXmlRecordParser recordParser = new VtdXmlRecordParser(List.of(
+                new Entry("average", "amount", AverageParser.class),
+                new Entry("length", "@name", StringLengthParser.class)));
+
+        // when
+        Record first = recordParser.parseXml("<payment name=\"abc\"><amount>1.5</amount><amount>2.5</amount></payment>");
+        Record second = recordParser.parseXml("<payment><amount>4</amount></payment>");
+
+        // then
+        Assertions.assertEquals(instances + 1, AverageParser.INSTANCES.get());
+        Assertions.assertEquals(RecordSchema.FieldType.DOUBLE, recordParser.schema().type(0));
+        Assertions.assertEquals(RecordSchema.FieldType.INT, recordParser.schema().type(1));
+        Assertions.assertEquals(2.0, first.getDouble(0));
+        Assertions.assertEquals(3, first.getInt(1));
+        Assertions.assertEquals(4.0, second.getDouble(0));
+        Assertions.assertEquals(0, second.get(1));
+    }
+}
@@ -0,0 +1,136 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class RecordStreamTest {
+
+    private final VtdXmlParser staffParser = new VtdXmlParser(List.of(
+            new Entry("id", "@id", Integer.class),
+            new Entry("departament", "@dep_name"),
+            new Entry("basic_salary", "salary/basic", Integer.class),
+            new Entry("employee_names", "employee/@name")
+    ));
+
+    @Test
+    public void shouldStreamRecordsFromFile() {
+        // when
+        List<Map<String, Object>> records;
+        try (Stream<Map<String, Object>> stream = staffParser.streamFile("src/test/resources/college.xml", "staff")) {
+            records = stream.collect(Collectors.toList());
+        }
+
+        // then
+        Assertions.assertEquals(3, records.size());
+        Assertions.assertEquals(101, records.get(0).get("id"));
+        Assertions.assertEquals("Admin", records.get(0).get("departament"));
+        Assertions.assertEquals(List.of("ashish", "amit", "nupur"), records.get(0).get("employee_names"));
+        Assertions.assertEquals(25000, records.get(1).get("basic_salary"));
+        Assertions.assertEquals("IT", records.get(2).get("departament"));
+    }
+
+    @Test
+    public void shouldStreamManyRecordsWithoutMaterializingDocument() {
+        // given
+        int count = 20_000;
+        InputStream inputStream = generate(count);
+
+        // when
+        long salarySum;
+        try (Stream<Map<String, Object>> stream = staffParser.stream(inputStream, "staff")) {
+            salarySum = stream.mapToLong(record -> (Integer) record.get("basic_salary")).sum();
+        }
+
+        // then
+        Assertions.assertEquals((long) count * (count - 1) / 2, salarySum);
+    }
+
+    @Test
+    public void shouldSplitAcrossChunkBoundaries() throws IOException {
+        // given
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<!DOCTYPE export [<!ELEMENT export ANY>]>\n" +
+                "<export>\n" +
+                "  <!-- <staff id=\"comment\"/> -->\n" +
+                "  <staffs>\n" +
+                "    <staff id=\"1\" note='a > b'><staff id=\"nested\"/><![CDATA[</staff>]]></staff>\n" +
+                "    <staffing id=\"not a record\"/>\n" +
+                "    <staff id=\"2\"/>\n" +
+                "  </staffs>\n" +
+                "</export>\n";
+
+        // when
+        List<String> records = split(xml.getBytes(StandardCharsets.UTF_8), 7);
+
+        // then
+        Assertions.assertEquals(List.of(
+                "<staff id=\"1\" note='a > b'><staff id=\"nested\"/><![CDATA[</staff>]]></staff>",
+                "<staff id=\"2\"/>"), records);
+    }
+
+    @Test
+    public void shouldKeepDeclaredEncodingForEachRecord() throws IOException {
+        // given
+        String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><export><staff dep_name=\"Zürich\"/></export>";
+
+        // when
+        Map<String, Object> record;
+        try (Stream<Map<String, Object>> stream = staffParser.stream(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.ISO_8859_1)), "staff")) {
+            record = stream.findFirst().orElseThrow();
+        }
+
+        // then
+        Assertions.assertEquals("Zürich", record.get("departament"));
+    }
+
+    private static List<String> split(byte[] xml, int chunkSize) throws IOException {
+        XmlRecordSplitter splitter = new XmlRecordSplitter(new ByteArrayInputStream(xml), "staff", chunkSize);
+        List<String> records = new ArrayList<>();
+        while (splitter.next()) {
+            records.add(new String(splitter.buffer(), splitter.offset(), splitter.length(), StandardCharsets.UTF_8));
+        }
+        return records;
+    }
+
+    private static InputStream generate(int count) {
+        List<InputStream> parts = new ArrayList<>();
+        parts.add(new ByteArrayInputStream("<export>".getBytes(StandardCharsets.UTF_8)));
+        parts.add(new InputStream() {
+            private int record;
+            private byte[] current = new byte[0];
+            private int pos;
+
+            @Override
+            public int read() {
+                if (pos == current.length) {
+                    if (record == count) {
+                        return -1;
+                    }
+                    current = ("<staff id=\"" + record + "\" dep_name=\"D\"><salary><basic>" + record + "</basic></salary></staff>")
+                            .getBytes(StandardCharsets.UTF_8);
+                    pos = 0;
+                    record++;
+                }
+                return current[pos++];
+            }
+        });
+        parts.add(new ByteArrayInputStream("</export>".getBytes(StandardCharsets.UTF_8)));
+        Enumeration<InputStream> enumeration = Collections.enumeration(parts);
+        return new SequenceInputStream(enumeration);
+    }
+}
@@ -0,0 +1,108 @@
+package com.bawi;
+
+import com.bawi.AbstractVtdXmlParser.Options;
+import com.bawi.VtdXmlParser.Entry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class SubtreeSkippingTest {
+
+    private static final List<Entry> HEADER_ENTRIES = List.of(
+            new Entry("id", "@id", Integer.class),
+            new Entry("title", "header/title"),
+            new Entry("first_author", "header[1]/author[1]/@name"),
+            new Entry("tags", "header/tag"));
+
+    private final VtdXmlParser parser = new VtdXmlParser(HEADER_ENTRIES);
+    private final VtdXmlParser skippingParser = new VtdXmlParser(HEADER_ENTRIES,
+            Options.defaults().withSkipUnmappedSubtrees(true));
+
+    @Test
+    public void shouldMapHeaderOfLargeDocumentLikeFullParse() {
+        // given
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?><!-- report --><report id=\"7\">"
+                + "<header><title>Q3</title><author name=\"ann\"/><author name=\"bob\"/><tag>a</tag></header>");
+        for (int i = 0; i < 1000; i++) {
+            xml.append("<body n=\"").append(i).append("\"><row>x &gt; y</row><![CDATA[<header>fake</header>]]><empty/></body>");
+        }
+        xml.append("<header><tag>b</tag></header></report>");
+        byte[] bytes = xml.toString().getBytes(StandardCharsets.UTF_8);
+
+        // when
+        Map<String, Object> result = skippingParser.parseXml(bytes);
+
+        // then
+        Assertions.assertEquals(parser.parseXml(bytes), result);
+        Assertions.assertEquals(7, result.get("id"));
+        Assertions.assertEquals("Q3", result.get("title"));
+        Assertions.assertEquals("ann", result.get("first_author"));
+        Assertions.assertEquals(List.of("a", "b"), result.get("tags"));
+    }
+
+    @Test
+    public void shouldFilterOnlyUnmappedChildren() {
+        // given
+        SubtreeFilter filter = new SubtreeFilter(Set.of("header"));
+        byte[] xml = "<r a='>'><header/><!-- <body> --><body><body/><x a=\"/>\"/></body> <header>h</header></r>"
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[xml.length];
+
+        // when
+        int length = filter.filter(xml, 0, xml.length, out);
+
+        // then
+        Assertions.assertEquals("<r a='>'><header/><!-- <body> --> <header>h</header></r>",
+                new String(out, 0, length, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldLeaveUnsupportedDocumentsToTokenizer() {
+        // given
+        SubtreeFilter filter = new SubtreeFilter(Set.of("header"));
+        byte[] out = new byte[256];
+
+        // then
+        for (String xml : List.of("<r><header/></r>", "<r/>", "<r><body>", "<!DOCTYPE r [<!ENTITY e 'x'>]><r><body/></r>")) {
+            byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+            Assertions.assertEquals(-1, filter.filter(bytes, 0, bytes.length, out), xml);
+        }
+        byte[] utf16 = "<r><body/></r>".getBytes(StandardCharsets.UTF_16);
+        Assertions.assertEquals(-1, filter.filter(utf16, 0, utf16.length, out));
+        Assertions.assertThrows(RuntimeException.class, () -> skippingParser.parseXml("<report><body></report>".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void shouldRejectMappingReadingOutsideItsSubtree() {
+        for (String xpath : List.of("/report/header", "//title", "header/../body", "*")) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> new VtdXmlParser(List.of(new Entry("value", xpath)),
+                    Options.defaults().withSkipUnmappedSubtrees(true)), xpath);
+        }
+    }
+
+    @Test
+    public void shouldMapFileWithSkippedSubtrees() throws IOException {
+        // given
+        VtdXmlParser staffParser = new VtdXmlParser(List.of(
+                new Entry("college_id", "@id", Integer.class),
+                new Entry("first_department", "staff[1]/@dep_name")),
+                Options.defaults().withMaxIdleStates(1).withSkipUnmappedSubtrees(true));
+        Path xml = Path.of("src/test/resources/college.xml");
+
+        // when
+        Map<String, Object> result = staffParser.parseFile(xml);
+
+        // then
+        Assertions.assertEquals(new VtdXmlParser(List.of(
+                new Entry("college_id", "@id", Integer.class),
+                new Entry("first_department", "staff[1]/@dep_name"))).parseXml(Files.readAllBytes(xml)), result);
+        Assertions.assertNotNull(result.get("first_department"));
+    }
+}
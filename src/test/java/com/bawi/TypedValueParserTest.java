@@ -0,0 +1,107 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+
+public class TypedValueParserTest {
+
+    private final VtdXmlParser vtdXmlParser = new VtdXmlParser(List.of(
+            new Entry("id", "@id", Integer.class),
+            new Entry("account", "@account", Long.class),
+            new Entry("active", "@active", Boolean.class),
+            new Entry("amount", "amount", Double.class),
+            new Entry("amounts", "amount/@tax", Double.class),
+            new Entry("created", "created", Instant.class),
+            new Entry("settled", "settled/@at", Instant.class),
+            new Entry("booked", "booked", Instant.class),
+            new Entry("no_text", "nested")
+    ));
+
+    @Test
+    public void shouldExtractTypedValuesFromTokens() {
+        // given
+        String xml = "<payment id=\"7\" account=\"9876543210123\" active=\"TRUE\">\n" +
+                "    <amount tax=\"0.23\">1250.75</amount>\n" +
+                "    <amount tax=\"0.08\"> 99 </amount>\n" +
+                "    <created>2024-02-29T23:59:58.123+01:00</created>\n" +
+                "    <settled at=\"2024-03-01T00:00Z\"/>\n" +
+                "    <booked> 2024-03-01 </booked>\n" +
+                "    <nested><child/></nested>\n" +
+                "</payment>";
+
+        // when
+        Map<String, Object> result = vtdXmlParser.parseXml(xml);
+
+        // then
+        Assertions.assertEquals(7, result.get("id"));
+        Assertions.assertEquals(9876543210123L, result.get("account"));
+        Assertions.assertEquals(true, result.get("active"));
+        Assertions.assertEquals(List.of(1250.75, 99.0), result.get("amount"));
+        Assertions.assertEquals(List.of(0.23, 0.08), result.get("amounts"));
+        Assertions.assertEquals(OffsetDateTime.parse("2024-02-29T23:59:58.123+01:00").toInstant(), result.get("created"));
+        Assertions.assertEquals(Instant.parse("2024-03-01T00:00:00Z"), result.get("settled"));
+        Assertions.assertEquals(Instant.parse("2024-03-01T00:00:00Z"), result.get("booked"));
+        Assertions.assertNull(result.get("no_text"));
+    }
+
+    @Test
+    public void shouldMatchBooleansAlikeInNormalAndHugeDocuments() {
+        // given
+        VtdXmlParser parser = new VtdXmlParser(List.of(new Entry("flags", "flag", Boolean.class)));
+        byte[] xml = ("<flags><flag> true </flag><flag>\n\tTRUE\n</flag><flag> 1 </flag><flag>&#116;rue</flag>"
+                + "<flag>truth</flag><flag> 0 </flag><flag/></flags>").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(xml.length).put(xml).flip();
+
+        // when
+        Map<String, Object> result = parser.parseXml(xml);
+        Map<String, Object> hugeResult = parser.parseOffHeap(direct);
+
+        // then
+        Assertions.assertEquals(List.of(true, true, true, true, false, false), result.get("flags"));
+        Assertions.assertEquals(result, hugeResult);
+    }
+
+    @Test
+    public void shouldParseEpochMillisLikeJavaTime() {
+        List<String> dateTimes = List.of(
+                "1970-01-01T00:00:00Z",
+                "1969-12-31T23:59:59.999Z",
+                "2000-02-29T12:30:00-05:30",
+                "2038-01-19T03:14:07.5+00:00",
+                "0001-01-01T00:00:00Z",
+                "9999-12-31T23:59:59.999999Z");
+        for (String dateTime : dateTimes) {
+            byte[] bytes = dateTime.getBytes(StandardCharsets.US_ASCII);
+            long millis = EpochMillis.parse(new com.ximpleware.IByteBuffer() {
+                @Override
+                public byte byteAt(int index) {
+                    return bytes[index];
+                }
+
+                @Override
+                public byte[] getBytes(int offset, int len) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int length() {
+                    return bytes.length;
+                }
+
+                @Override
+                public byte[] getBytes() {
+                    return bytes;
+                }
+            }, 0, bytes.length);
+            Assertions.assertEquals(OffsetDateTime.parse(dateTime).toInstant().toEpochMilli(), millis, dateTime);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class VtdIndexCacheTest {
+
+    private final VtdXmlParser staffParser = new VtdXmlParser(List.of(
+            new Entry("college_id", "@id", Integer.class),
+            new Entry("staff", "staff", List.of(
+                    new Entry("id", "@id", Long.class),
+                    new Entry("employee_names", "employee/@name")))));
+
+    private final VtdXmlParser salaryParser = new VtdXmlParser(List.of(
+            new Entry("salaries", "staff/salary/basic", Double.class)));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldMapIndexedFileLikeParsedFile() throws IOException {
+        // given
+        Path xml = Files.copy(Path.of("src/test/resources/college.xml"), directory.resolve("college.xml"));
+        VtdIndexCache cache = new VtdIndexCache(1 << 20);
+
+        // when
+        Map<String, Object> staff = staffParser.parseFile(xml, cache);
+        Map<String, Object> salaries = salaryParser.parseFile(xml, cache);
+
+        // then
+        Assertions.assertEquals(staffParser.parseFile(xml), staff);
+        Assertions.assertEquals(salaryParser.parseFile(xml), salaries);
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(1, indexFiles(directory).size());
+    }
+
+    @Test
+    public void shouldLoadPersistedIndexInNewCache() throws IOException {
+        // given
+        Path xml = Files.copy(Path.of("src/test/resources/college.xml"), directory.resolve("college.xml"));
+        Path cacheDirectory = directory.resolve("cache");
+        new VtdIndexCache(cacheDirectory, 0).index(xml);
+        Path indexFile = indexFiles(cacheDirectory).get(0);
+        FileTime written = Files.getLastModifiedTime(indexFile);
+
+        // when
+        VtdIndexCache cache = new VtdIndexCache(cacheDirectory, 0);
+        Map<String, Object> result = staffParser.parseFile(xml, cache);
+
+        // then
+        Assertions.assertEquals(staffParser.parseFile(xml), result);
+        Assertions.assertEquals(List.of(indexFile), indexFiles(cacheDirectory));
+        Assertions.assertEquals(written, Files.getLastModifiedTime(indexFile));
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldReplaceIndexOfChangedFile() throws IOException {
+        // given
+        Path xml = Files.writeString(directory.resolve("college.xml"), "<college id=\"1\"/>");
+        VtdIndexCache cache = new VtdIndexCache(1 << 20);
+        Assertions.assertEquals(1, staffParser.parseFile(xml, cache).get("college_id"));
+
+        // when
+        Files.writeString(xml, "<college id=\"22\"><staff id=\"5\"/></college>");
+        Files.setLastModifiedTime(xml, FileTime.fromMillis(Files.getLastModifiedTime(xml).toMillis() + 1000));
+        Map<String, Object> result = staffParser.parseFile(xml, cache);
+
+        // then
+        Assertions.assertEquals(22, result.get("college_id"));
+        Assertions.assertEquals(5L, ((Map<?, ?>) result.get("staff")).get("id"));
+        Assertions.assertEquals(1, indexFiles(directory).size());
+        cache.invalidate(xml);
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertTrue(indexFiles(directory).isEmpty());
+    }
+
+    @Test
+    public void shouldKeepIndexesOfFilesSharingNamePrefix() throws IOException {
+        // given
+        Path xml = Files.copy(Path.of("src/test/resources/college.xml"), directory.resolve("a.xml"));
+        Path original = Files.copy(xml, directory.resolve("a.xml.orig"));
+        VtdIndexCache cache = new VtdIndexCache(0);
+        cache.index(original);
+        Path originalIndex = indexFiles(directory).get(0);
+
+        // when
+        cache.index(xml);
+        cache.invalidate(xml);
+
+        // then
+        Assertions.assertEquals(List.of(originalIndex), indexFiles(directory));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedDocuments() throws IOException {
+        // given
+        Path first = Files.copy(Path.of("src/test/resources/college.xml"), directory.resolve("first.xml"));
+        Path second = Files.copy(Path.of("src/test/resources/college.xml"), directory.resolve("second.xml"));
+        VtdIndexCache cache = new VtdIndexCache(Files.size(first) + Files.size(first) / 2);
+
+        // when
+        staffParser.parseFile(first, cache);
+        staffParser.parseFile(second, cache);
+
+        // then
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(2, indexFiles(directory).size());
+    }
+
+    private static List<Path> indexFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(VtdIndexCache.INDEX_SUFFIX)).toList();
+        }
+    }
+}
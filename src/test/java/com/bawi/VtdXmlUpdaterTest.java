@@ -0,0 +1,189 @@
+package com.bawi;
+
+import com.bawi.VtdXmlParser.Entry;
+import com.bawi.parser.SumValuesParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class VtdXmlUpdaterTest {
+
+    private final List<Entry> mapping = List.of(
+            new Entry("college_id", "@id", Integer.class),
+            new Entry("college_description", "description"),
+            new Entry("staff", "staff", List.of(
+                    new Entry("id", "@id", Integer.class),
+                    new Entry("departament", "@dep_name"),
+                    new Entry("basic_salary", "salary/basic", Integer.class),
+                    new Entry("bonus", "salary/bonus", Integer.class),
+                    new Entry("reviewed", "@reviewed", Boolean.class))),
+            new Entry("first_staff_dep_name", "staff[1]/@dep_name"),
+            new Entry("employee_names", "staff/employee/@name"),
+            new Entry("staff_basic_salary_sum", "staff/salary/basic", SumValuesParser.class));
+
+    private final VtdXmlUpdater updater = new VtdXmlUpdater(mapping);
+    private final VtdXmlParser parser = new VtdXmlParser(mapping);
+
+    @Test
+    public void shouldUpdateFieldsAndLeaveRestOfDocumentUntouched() throws IOException {
+        // given
+        byte[] xml = Files.readAllBytes(Path.of("src/test/resources/college.xml"));
+        Map<String, Object> updates = Map.of(
+                "college_id", 456,
+                "first_staff_dep_name", "R&D \"core\"",
+                "college_description", "EU <college>");
+
+        // when
+        byte[] updated = update(xml, updates);
+
+        // then
+        Map<String, Object> expected = new HashMap<>(parser.parseXml(xml));
+        expected.putAll(updates);
+        Map<String, Object> result = parser.parseXml(updated);
+        Assertions.assertEquals(expected.get("college_id"), result.get("college_id"));
+        Assertions.assertEquals("R&D \"core\"", result.get("first_staff_dep_name"));
+        Assertions.assertEquals("EU <college>", result.get("college_description"));
+        Assertions.assertEquals(expected.get("staff"), withoutDepartament(result.get("staff"), expected.get("staff")));
+        String text = new String(updated, StandardCharsets.UTF_8);
+        String original = new String(xml, StandardCharsets.UTF_8);
+        Assertions.assertEquals(original.substring(original.indexOf("<employee")), text.substring(text.indexOf("<employee")));
+    }
+
+    @Test
+    public void shouldUpdateNestedRecordsAndInsertMissingFields() {
+        // given
+        byte[] xml = ("<college id=\"1\"><staff id=\"1\"><salary><basic>10</basic></salary></staff>"
+                + "<staff id=\"2\"><salary/></staff></college>").getBytes(StandardCharsets.UTF_8);
+
+        // when
+        Map<String, Object> result = parser.parseXml(update(xml, Map.of(
+                "staff", Map.of("basic_salary", 20, "bonus", 5, "reviewed", true),
+                "college_description", "new")));
+
+        // then
+        Assertions.assertEquals("new", result.get("college_description"));
+        List<?> staff = (List<?>) result.get("staff");
+        Assertions.assertEquals(Map.of("id", 1, "basic_salary", 20, "bonus", 5, "reviewed", true),
+                withoutNulls((Map<?, ?>) staff.get(0)));
+        Assertions.assertEquals(Map.of("id", 2, "basic_salary", 20, "bonus", 5, "reviewed", true),
+                withoutNulls((Map<?, ?>) staff.get(1)));
+    }
+
+    @Test
+    public void shouldAssignListValuesInOrderAndRemoveNullFields() {
+        // given
+        byte[] xml = "<college id=\"1\"><description>old</description><staff><employee name=\"a\"/><employee name=\"b\"/></staff></college>"
+                .getBytes(StandardCharsets.UTF_8);
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("employee_names", List.of("x", "y"));
+        updates.put("college_description", null);
+
+        // when
+        byte[] updated = update(xml, updates);
+
+        // then
+        Assertions.assertEquals("<college id=\"1\"><staff><employee name=\"x\"/><employee name=\"y\"/></staff></college>",
+                new String(updated, StandardCharsets.UTF_8));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> update(xml, Map.of("employee_names", List.of("x"))));
+    }
+
+    @Test
+    public void shouldRemoveMatchedRecordsForNull() {
+        // given
+        byte[] xml = "<college id=\"1\"><staff id=\"1\"/><description>d</description><staff id=\"2\"><salary/></staff></college>"
+                .getBytes(StandardCharsets.UTF_8);
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("staff", null);
+
+        // when
+        byte[] updated = update(xml, updates);
+
+        // then
+        Assertions.assertEquals("<college id=\"1\"><description>d</description></college>", new String(updated, StandardCharsets.UTF_8));
+        Assertions.assertNull(parser.parseXml(updated).get("staff"));
+    }
+
+    @Test
+    public void shouldRejectUnknownAndCustomFields() {
+        byte[] xml = "<college id=\"1\"/>".getBytes(StandardCharsets.UTF_8);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> update(xml, Map.of("unknown", 1)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> update(xml, Map.of("staff_basic_salary_sum", 1)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> update(xml, Map.of("staff", 1)));
+    }
+
+    @Test
+    public void shouldUpdateFileThroughChannel(@TempDir Path directory) throws IOException {
+        // given
+        Path target = directory.resolve("updated.xml");
+
+        // when
+        updater.updateFile(Path.of("src/test/resources/college.xml"), Map.of("college_id", 789), target);
+
+        // then
+        Map<String, Object> result = parser.parseFile(target);
+        Assertions.assertEquals(789, result.get("college_id"));
+        Assertions.assertEquals(20000 + 25000 + 35000, result.get("staff_basic_salary_sum"));
+    }
+
+    @Test
+    public void shouldNotPinDocumentsInIdleStates() throws Exception {
+        // given
+        VtdXmlUpdater pooled = new VtdXmlUpdater(mapping, VtdXmlUpdater.Options.defaults().withMaxIdleStates(1));
+        byte[] xml = Files.readAllBytes(Path.of("src/test/resources/college.xml"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        pooled.update(xml, Map.of("staff", Map.of("bonus", 1), "employee_names", List.of("a", "b", "c", "d", "e", "f", "g", "h", "i")), out);
+        WeakReference<byte[]> document = new WeakReference<>(xml);
+        xml = null;
+
+        // then
+        Assertions.assertEquals(List.of(1, 1, 1), ((List<?>) parser.parseXml(out.toByteArray()).get("staff")).stream()
+                .map(record -> ((Map<?, ?>) record).get("bonus")).collect(Collectors.toList()));
+        for (int i = 0; i < 50 && document.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(document.get() == null, "document is still reachable");
+    }
+
+    private byte[] update(byte[] xml, Map<String, ?> updates) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        updater.update(xml, updates, out);
+        return out.toByteArray();
+    }
+
+    private static Map<Object, Object> withoutNulls(Map<?, ?> record) {
+        Map<Object, Object> values = new HashMap<>();
+        record.forEach((key, value) -> {
+            if (value != null) {
+                values.put(key, value);
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Replaces the departament of the first record, which was updated through another entry, by the expected one.
+     */
+    private static Object withoutDepartament(Object actual, Object expected) {
+        List<Map<Object, Object>> records = new ArrayList<>();
+        for (Object record : (List<?>) actual) {
+            records.add(new HashMap<>((Map<?, ?>) record));
+        }
+        records.get(0).put("departament", ((Map<?, ?>) ((List<?>) expected).get(0)).get("departament"));
+        return records;
+    }
+}